@@ -0,0 +1,304 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * The server, state, codec, tracker and GUI hot paths measured by the benchmarks package. JMH only runs
+ * benchmarks of a named package, which cannot refer to the classes of the default package, so the
+ * benchmarks look this class up by name and call the operations through LongSupplier. Every operation
+ * returns a value for the benchmark to consume.
+ */
+public class HotPaths {
+
+    private HotPaths() {
+    }
+
+    public static Map<String, LongSupplier> operations(int gridSize, int players) throws IOException {
+        GameServer server = new GameServer(new GameMeta(gridSize, 10), null, null, EngineMode.LOCKING);
+        server.initializeLocal();
+        GameState state = GameState.newGameState(gridSize, 10);
+        for (int i = 0; i < players; i++) {
+            server.addPlayer(PlayerIds.of(i));
+            state.addPlayer(PlayerIds.of(i), state.getRandomAvailablePosition());
+        }
+        // the delta of a refresh after every player tried one step
+        long base = state.getVersion();
+        for (int i = 0; i < players; i++) {
+            PlayerInfo player = state.getPlayerMap().get(PlayerIds.of(i));
+            Position next = player.getPosition().movePosition(Direction.EAST);
+            if (state.isPositionAvailable(next)) {
+                state.movePlayerAndFollowUp(player, next, null);
+            }
+        }
+        GameStateDelta delta = GameStateDelta.ofChanges(state, base, state.getChangesSince(base));
+        HeartbeatTicks heartbeats = new HeartbeatTicks(players);
+        CellLock lock = new CellLock(gridSize);
+        GameGui gui = new GameGui(new GameMeta(gridSize, 10));
+        GameStateData data = state.exportGameData();
+        // the same game after one player stepped onto a free cell
+        GameStateData moved = new GameStateData(data);
+        PlayerInfo mover = new PlayerInfo(data.getPlayerMap().get(PlayerIds.of(0)));
+        mover.setPosition(state.getRandomAvailablePosition());
+        moved.getPlayerMap().put(mover.getId(), mover);
+        MazeView view = gui.getMazeView();
+        view.setSize(view.getPreferredSize());
+        BufferedImage viewport = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        data.writeTo(new DataOutputStream(bytes));
+        int encodedSize = bytes.size();
+
+        Map<String, LongSupplier> operations = new LinkedHashMap<>();
+        operations.put("GameServer.movePlayer", () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return server.movePlayer(PlayerIds.of(random.nextInt(players)), direction(random)).getVersion();
+        });
+        operations.put("GameState.exportGameData.cached", () -> state.exportGameData().getVersion());
+        operations.put("GameState.exportGameData.changed", () -> {
+            // a server change drops the cached snapshot without a new version
+            state.setBackupServer(ThreadLocalRandom.current().nextBoolean() ? "aa" : "ab");
+            return state.exportGameData().getVersion();
+        });
+        operations.put("GameState.getRandomAvailablePosition", () -> state.getRandomAvailablePosition().getX());
+        operations.put("GameState.isPositionOccupied",
+                () -> state.isPositionOccupied(randomPosition(gridSize)) ? 1 : 0);
+        operations.put("CellLock.tryLockAndUnlock", () -> {
+            Position position = randomPosition(gridSize);
+            boolean locked = lock.tryLock(position);
+            lock.unlock(position);
+            return locked ? 1 : 0;
+        });
+        operations.put("GameStateData.roundTrip", () -> {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(encodedSize);
+                data.writeTo(new DataOutputStream(out));
+                GameStateData copy = new GameStateData();
+                copy.readFrom(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+                return copy.getVersion();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        operations.put("GameStateDelta.roundTrip", () -> {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                delta.writeTo(new DataOutputStream(out));
+                GameStateDelta copy = new GameStateDelta();
+                copy.readFrom(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+                return copy.getVersion();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        operations.put("HeartbeatWheel.tick", heartbeats::tick);
+        operations.put("GameGui.render.unchanged", () -> {
+            gui.render(data);
+            return 0;
+        });
+        operations.put("GameGui.render.oneMove", () -> {
+            gui.render(ThreadLocalRandom.current().nextBoolean() ? data : moved);
+            return 0;
+        });
+        operations.put("MazeView.paint.800x600", () -> {
+            Graphics2D g = viewport.createGraphics();
+            g.setClip(0, 0, viewport.getWidth(), viewport.getHeight());
+            view.paint(g);
+            g.dispose();
+            return 0;
+        });
+        return operations;
+    }
+
+    /**
+     * Moves on a server in the given engine mode. Each calling thread drives a player of its own like a
+     * client, and asks for the changes since the version of its previous move.
+     */
+    public static LongSupplier engine(String mode, int gridSize, int players) {
+        return moves(newServer(gridSize, players, EngineMode.valueOf(mode)), players);
+    }
+
+    /**
+     * Moves like {@link #engine} on a server in LOCKING mode that journals every change to the directory,
+     * or none without a directory. The journal is added to the resources to close.
+     */
+    public static LongSupplier journaledMoves(Path directory, int gridSize, int players, List<AutoCloseable> resources) {
+        configureJournal(directory, Constants.DEFAULT_JOURNAL_CHECKPOINT_INTERVAL);
+        GameServer server = newServer(gridSize, players, EngineMode.LOCKING);
+        resources.add(server.getJournal()::close);
+        return moves(server, players);
+    }
+
+    /**
+     * Recovery of a game from its first checkpoint and the given number of journal records after it.
+     */
+    public static LongSupplier recovery(Path directory, int gridSize, int players, int tail) throws RemoteException {
+        // no checkpoint while the tail is written, recovery replays all of it
+        configureJournal(directory, Long.MAX_VALUE);
+        GameServer server = newServer(gridSize, players, EngineMode.LOCKING);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start = server.getGameData().getVersion();
+        long version = start;
+        while (version - start < tail) {
+            version = server.movePlayerSince(PlayerIds.of(random.nextInt(players)), direction(random), version)
+                    .getVersion();
+        }
+        long recoverable = version;
+        server.getJournal().close();
+        GameJournal journal = GameJournal.fromSystemProperties(0);
+        return () -> {
+            GameState recovered = journal.recover(gridSize, 0, gridSize);
+            if (recovered.getVersion() != recoverable) {
+                throw new IllegalStateException("Recovered version " + recovered.getVersion() + " of " + recoverable);
+            }
+            return recovered.getVersion();
+        };
+    }
+
+    /**
+     * Moves and refreshes on a server with the given number of read replicas following it. Each
+     * refreshing thread sticks to one replica like a player does, and refreshes from the server while its
+     * replica is behind the version it saw last. The replicas are added to the resources to close.
+     */
+    public static Map<String, LongSupplier> replicas(int gridSize, int players, int replicaCount,
+                                                     List<AutoCloseable> resources) throws InterruptedException {
+        GameServer server = newServer(gridSize, players, EngineMode.LOCKING);
+        ReadReplica[] replicas = new ReadReplica[replicaCount];
+        for (int i = 0; i < replicaCount; i++) {
+            replicas[i] = new ReadReplica("replica" + i, gridSize);
+            replicas[i].follow(server);
+            resources.add(replicas[i]::close);
+        }
+        for (ReadReplica replica : replicas) {
+            while (replica.getVersion() < 0) {
+                Thread.sleep(1);
+            }
+        }
+        AtomicInteger readers = new AtomicInteger();
+        ThreadLocal<Reader> reader = ThreadLocal.withInitial(() -> new Reader(
+                replicaCount == 0 ? null : replicas[readers.getAndIncrement() % replicaCount]));
+
+        Map<String, LongSupplier> operations = new LinkedHashMap<>();
+        operations.put("move", moves(server, players));
+        operations.put("refresh", () -> {
+            Reader current = reader.get();
+            try {
+                GameStateDelta delta = current.replica == null ? null : current.replica.getGameDataSince(current.version);
+                if (delta == null || delta.getVersion() < current.version) {
+                    delta = server.getGameDataSince(current.version);
+                }
+                current.version = delta.getVersion();
+                return current.version;
+            } catch (RemoteException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return operations;
+    }
+
+    private static GameServer newServer(int gridSize, int players, EngineMode mode) {
+        GameServer server = new GameServer(new GameMeta(gridSize, 10), null, null, mode);
+        server.initializeLocal();
+        for (int i = 0; i < players; i++) {
+            server.addPlayer(PlayerIds.of(i));
+        }
+        return server;
+    }
+
+    private static LongSupplier moves(GameServer server, int players) {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadLocal<Mover> mover = ThreadLocal.withInitial(
+                () -> new Mover(PlayerIds.of(threads.getAndIncrement() % players)));
+        return () -> {
+            Mover current = mover.get();
+            current.version = server.movePlayerSince(current.playerId, direction(ThreadLocalRandom.current()),
+                    current.version).getVersion();
+            return current.version;
+        };
+    }
+
+    private static void configureJournal(Path directory, long checkpointInterval) {
+        if (directory == null) {
+            System.clearProperty(Constants.JOURNAL_DIR_PROPERTY);
+        } else {
+            System.setProperty(Constants.JOURNAL_DIR_PROPERTY, directory.toString());
+        }
+        System.setProperty(Constants.JOURNAL_CHECKPOINT_INTERVAL_PROPERTY, String.valueOf(checkpointInterval));
+    }
+
+    private static Direction direction(ThreadLocalRandom random) {
+        return Direction.getDirectionByNumber(1 + random.nextInt(4));
+    }
+
+    private static Position randomPosition(int gridSize) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return Position.of(gridSize, random.nextInt(gridSize), random.nextInt(gridSize));
+    }
+
+    private static class Mover {
+        private final String playerId;
+        private long version = -1;
+
+        Mover(String playerId) {
+            this.playerId = playerId;
+        }
+    }
+
+    private static class Reader {
+        private final ReadReplica replica;
+        private long version = -1;
+
+        Reader(ReadReplica replica) {
+            this.replica = replica;
+        }
+    }
+
+    /**
+     * One tick of the tracker's failure detector: the players that ping within the tick, every
+     * heartbeat interval each, then advancing the wheel. The clock is simulated, so no heartbeat expires.
+     */
+    private static class HeartbeatTicks {
+        private final HeartbeatWheel wheel = new HeartbeatWheel(Constants.HEARTBEAT_MAX_TIMEOUT_MILLIS,
+                Constants.HEARTBEAT_WHEEL_TICK_MILLIS);
+        private final FailureDetectorPolicy policy = FailureDetectorPolicy.forRole(ClientType.PLAYER);
+        private final Heartbeat[] heartbeats;
+        private long now;
+
+        HeartbeatTicks(int players) {
+            this.heartbeats = new Heartbeat[players];
+            for (int i = 0; i < players; i++) {
+                this.heartbeats[i] = this.wheel.register(PlayerIds.of(i), 0, this.policy);
+            }
+        }
+
+        // the wheel is advanced by the single failure detector thread of the tracker
+        synchronized long tick() {
+            long tick = this.wheel.getTickMillis();
+            int players = this.heartbeats.length;
+            // player i pings at i * HEARTBEAT_INTERVAL_MILLIS / players within each interval
+            long phase = this.now % Constants.HEARTBEAT_INTERVAL_MILLIS;
+            int from = (int) ((phase * players + Constants.HEARTBEAT_INTERVAL_MILLIS - 1) / Constants.HEARTBEAT_INTERVAL_MILLIS);
+            int to = (int) Math.min(players, ((phase + tick) * players + Constants.HEARTBEAT_INTERVAL_MILLIS - 1)
+                    / Constants.HEARTBEAT_INTERVAL_MILLIS);
+            for (int i = from; i < to; i++) {
+                this.heartbeats[i].beat(this.now, this.policy);
+            }
+            this.now += tick;
+            int expired = this.wheel.advance(this.now).size();
+            if (expired != 0) {
+                throw new IllegalStateException(expired + " heartbeats expired although all players pinged");
+            }
+            return this.now;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Move throughput of the engine modes on an in-process game server without registry, backup or
+ * clients, each benchmark thread moving a player of its own:
+ *
+ *   mvn -P jmh compile exec:exec -Djmh.args="EngineBenchmark -t 16"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+// the server logs every rejected move, which must not be part of the measurement
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dmaze.log.level=ERROR"})
+public class EngineBenchmark {
+
+    @Param({"LOCKING", "SINGLE_WRITER", "TICK"})
+    public String mode;
+
+    @Param({"15"})
+    public int gridSize;
+
+    @Param({"100"})
+    public int players;
+
+    private LongSupplier move;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.move = HotPathsBridge.call("engine", this.mode, this.gridSize, this.players);
+    }
+
+    @Benchmark
+    public long movePlayerSince() {
+        return this.move.getAsLong();
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time per operation of the server hot paths for every combination of grid size and player count. Run
+ * with the jmh profile, which adds the gc profiler for the allocation per operation:
+ *
+ *   mvn -P jmh compile exec:exec
+ *   mvn -P jmh compile exec:exec -Djmh.args="HotPathBenchmark -p operation=GameServer.movePlayer -t 4"
+ *
+ * More threads (-t) show the contended throughput of the operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// the operations log joins and failures, which must not be part of the measurement
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dmaze.log.level=ERROR"})
+public class HotPathBenchmark {
+
+    @Param({"15", "50"})
+    public int gridSize;
+
+    @Param({"10", "100"})
+    public int players;
+
+    @Param({"GameServer.movePlayer", "GameState.exportGameData.cached", "GameState.exportGameData.changed",
+            "GameState.getRandomAvailablePosition", "GameState.isPositionOccupied", "CellLock.tryLockAndUnlock",
+            "GameStateData.roundTrip", "GameStateDelta.roundTrip", "HeartbeatWheel.tick", "GameGui.render.unchanged",
+            "GameGui.render.oneMove", "MazeView.paint.800x600"})
+    public String operation;
+
+    private LongSupplier run;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map<String, LongSupplier> operations = HotPathsBridge.call("operations", this.gridSize, this.players);
+        this.run = operations.get(this.operation);
+        if (this.run == null) {
+            throw new IllegalArgumentException("Unknown operation " + this.operation);
+        }
+    }
+
+    @Benchmark
+    public long run() {
+        return this.run.getAsLong();
+    }
+}
@@ -0,0 +1,28 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Calls the factories of HotPaths, which the benchmarks cannot refer to because it is in the default
+ * package.
+ */
+final class HotPathsBridge {
+
+    private HotPathsBridge() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T call(String factory, Object... args) throws Exception {
+        for (Method method : Class.forName("HotPaths").getMethods()) {
+            if (method.getName().equals(factory)) {
+                try {
+                    return (T) method.invoke(null, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown factory " + factory);
+    }
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of journaling moves on an in-process game server, and how long recovery from the checkpoint and
+ * a journal tail of the given length takes. The journal lives in a temporary directory, on the file
+ * system of java.io.tmpdir:
+ *
+ *   mvn -P jmh compile exec:exec -Djmh.args="JournalBenchmark.move -t 8"
+ *   mvn -P jmh compile exec:exec -Djmh.args="JournalBenchmark.recover -Djava.io.tmpdir=/data/tmp"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// the server logs every rejected move, which must not be part of the measurement
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dmaze.log.level=ERROR"})
+public class JournalBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Moves {
+
+        @Param({"false", "true"})
+        public boolean journaled;
+
+        @Param({"15"})
+        public int gridSize;
+
+        @Param({"100"})
+        public int players;
+
+        private final List<AutoCloseable> resources = new ArrayList<>();
+        private Path directory;
+        private LongSupplier move;
+
+        @Setup
+        public void setUp() throws Exception {
+            this.directory = Files.createTempDirectory("maze-journal");
+            this.move = HotPathsBridge.call("journaledMoves", this.journaled ? this.directory : null, this.gridSize,
+                    this.players, this.resources);
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            close(this.resources, this.directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovery {
+
+        @Param({"0", "1000", "10000", "50000"})
+        public int tail;
+
+        @Param({"15"})
+        public int gridSize;
+
+        @Param({"100"})
+        public int players;
+
+        private Path directory;
+        private LongSupplier recover;
+
+        @Setup
+        public void setUp() throws Exception {
+            this.directory = Files.createTempDirectory("maze-journal");
+            this.recover = HotPathsBridge.call("recovery", this.directory, this.gridSize, this.players, this.tail);
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            close(new ArrayList<>(), this.directory);
+        }
+    }
+
+    @Benchmark
+    public long move(Moves moves) {
+        return moves.move.getAsLong();
+    }
+
+    @Benchmark
+    public long recover(Recovery recovery) {
+        return recovery.recover.getAsLong();
+    }
+
+    private static void close(List<AutoCloseable> resources, Path directory) throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How many refreshes read replicas take off an in-process primary server while movers keep changing the
+ * game. Two threads move and eight refresh, so the throughput of each shows how much they get in each
+ * other's way:
+ *
+ *   mvn -P jmh compile exec:exec -Djmh.args="ReadReplicaBenchmark"
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// the server logs every rejected move, which must not be part of the measurement
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dmaze.log.level=ERROR"})
+public class ReadReplicaBenchmark {
+
+    @Param({"0", "1", "2", "4"})
+    public int replicas;
+
+    @Param({"15"})
+    public int gridSize;
+
+    @Param({"100"})
+    public int players;
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private LongSupplier move;
+    private LongSupplier refresh;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map<String, LongSupplier> operations = HotPathsBridge.call("replicas", this.gridSize, this.players,
+                this.replicas, this.resources);
+        this.move = operations.get("move");
+        this.refresh = operations.get("refresh");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        for (AutoCloseable resource : this.resources) {
+            resource.close();
+        }
+    }
+
+    @Benchmark
+    @Group("game")
+    @GroupThreads(2)
+    public long move() {
+        return this.move.getAsLong();
+    }
+
+    @Benchmark
+    @Group("game")
+    @GroupThreads(8)
+    public long refresh() {
+        return this.refresh.getAsLong();
+    }
+}
@@ -1,29 +1,114 @@
+import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.rmi.registry.Registry;
+import java.rmi.server.ExportException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
 
-public class BackupServer implements IBackupServer {
+/**
+ * Hot standby of the primary server. The backup keeps a live game state that replays the changes of the
+ * primary, with its cell indexes up to date, and a game server that is built but not exported. Promoting
+ * the backup hands the state to that server, nothing has to be fetched or rebuilt. Until then the state
+ * also serves refreshes as a read replica.
+ */
+public class BackupServer implements IBackupServer, IReadReplica {
 
     private static final Logger logger = Logger.getLogger(BackupServer.class);
 
     private final String playerId;
     private final Registry registry;
+    private final ITracker tracker;
+    private final int region;
+    private final boolean sharded;
+    private final int gridSize;
+    private final int fromX;
+    private final int toX;
+    private final GameServer standby;
     private IGameServer primaryServer;
-    private volatile GameStateData gameStateData;
+    private volatile GameState replica;
+    private boolean promoted;
+    private final Metrics metrics;
 
     public BackupServer(Game game) {
         this.playerId = game.getPlayerID();
         this.registry = game.getRegistry();
+        this.tracker = game.getTracker();
+        this.region = game.getServedRegion();
+        RegionMap regionMap = RegionMap.of(game);
+        this.sharded = regionMap.isSharded();
+        this.gridSize = game.getGridSize();
+        this.fromX = regionMap.getFromX(this.region);
+        this.toX = regionMap.getToX(this.region);
+        this.standby = new GameServer(game);
+        this.metrics = new Metrics("BackupServer", this.region);
+        this.metrics.gauge("players", () -> {
+            GameState replica = this.replica;
+            return replica == null ? 0 : replica.getPlayerMap().size();
+        });
+        this.metrics.gauge("version", () -> {
+            GameState replica = this.replica;
+            return replica == null ? -1 : replica.getVersion();
+        });
     }
 
     @Override
     public GameStateData getGameData() throws RemoteException {
-        return new GameStateData(this.gameStateData);
+        GameState replica = this.replica;
+        return this.metrics.time("getGameData", () -> replica == null ? null : replica.exportGameData());
     }
 
     @Override
-    public void updateGameData(GameStateData gameStateData) throws RemoteException {
-        this.gameStateData = new GameStateData(gameStateData);
+    public GameStateDelta getGameDataSince(long version) throws RemoteException {
+        return this.metrics.time("getGameDataSince", () -> ReadReplica.readSince(this.replica, version));
+    }
+
+    @Override
+    public synchronized void updateGameData(GameStateData gameStateData) throws RemoteException {
+        if (this.promoted) {
+            throw new RemoteException("Backup server has been promoted to primary");
+        }
+        this.metrics.time("updateGameData", () -> {
+            this.replica = gameStateData == null ? null
+                    : new GameState(gameStateData, this.gridSize, this.fromX, this.toX);
+        });
+    }
+
+    @Override
+    public synchronized long applyChanges(List<StateChange> changes) throws RemoteException {
+        if (this.promoted) {
+            throw new RemoteException("Backup server has been promoted to primary");
+        }
+        if (this.replica == null) {
+            return -1;
+        }
+        return this.metrics.time("applyChanges", () -> {
+            if (!this.replica.applyChanges(changes)) {
+                logger.warn("Replication gap detected, backup version={}, first change={}", this.replica.getVersion(),
+                        changes.get(0).getSequence());
+                this.metrics.increment("replicationGaps");
+            }
+            this.metrics.add("appliedChanges", changes.size());
+            return this.replica.getVersion();
+        });
+    }
+
+    /**
+     * Stops taking changes and starts serving the replica as primary server.
+     * @return the serving primary server, null if there is no replica to serve
+     */
+    public synchronized GameServer promote() {
+        if (this.replica == null) {
+            return null;
+        }
+        this.promoted = true;
+        this.metrics.unregister();
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            logger.warn("Backup server was not exported");
+        }
+        this.standby.promote(this.replica);
+        return this.standby;
     }
 
     // this method will be used for both initializing or respawning a backup server
@@ -31,32 +116,51 @@ public class BackupServer implements IBackupServer {
         tryLookupPrimaryServer();
         tryChangeBackupServer();
         trySyncGameData();
+        this.standby.warmUp();
 
         try {
-            IBackupServer stub = (IBackupServer) UnicastRemoteObject.exportObject(this, Constants.BACKUP_SERVER_PORT);
-            this.registry.rebind(Constants.BACKUP_GAME_SERVER_STUB_NAME, stub);
+            // several backups of a sharded grid may share a host, so they take any free port
+            IBackupServer stub = this.export(this.sharded ? 0 : Constants.BACKUP_SERVER_PORT);
+            this.registry.rebind(RegionMap.backupStubName(this.region), stub);
+            this.metrics.register();
+            if (!this.sharded) {
+                this.tracker.registerReadReplica(this.playerId, (IReadReplica) stub);
+            }
             logger.info("Back server ready!");
         } catch (Exception e) {
-            logger.error("Back server exception: " + e.toString());
+            logger.error("Back server exception: {}", e);
             e.printStackTrace();
         }
     }
 
+    private IBackupServer export(int port) throws RemoteException {
+        try {
+            return (IBackupServer) UnicastRemoteObject.exportObject(this, port);
+        } catch (ExportException e) {
+            if (port == 0) {
+                throw e;
+            }
+            // a promoted backup on the same host may still hold the port for a moment
+            logger.warn("Backup server port {} in use, exporting on any free port", port);
+            return (IBackupServer) UnicastRemoteObject.exportObject(this, 0);
+        }
+    }
+
     private void tryLookupPrimaryServer() {
         try {
-            this.primaryServer = (IGameServer) this.registry.lookup(Constants.PRIMARY_GAME_SERVER_STUB_NAME);
+            this.primaryServer = (IGameServer) this.registry.lookup(RegionMap.primaryStubName(this.region));
         } catch (Exception e) {
-            logger.warn("Looking up primary server failed! error=" + e.getMessage());
+            logger.warn("Looking up primary server failed! error={}", e.getMessage());
         }
     }
 
     private void trySyncGameData() {
         try {
             if (this.primaryServer != null) {
-                this.gameStateData = this.primaryServer.getGameData();
+                this.updateGameData(this.primaryServer.getGameData());
             }
         } catch (Exception e) {
-            logger.warn("Sync game data failed! error=" + e.getMessage());
+            logger.warn("Sync game data failed! error={}", e.getMessage());
         }
     }
 
@@ -66,7 +170,7 @@ public class BackupServer implements IBackupServer {
                 this.primaryServer.changeBackupServer(this.playerId);
             }
         } catch (Exception e) {
-            logger.warn("Change backup server failed! error=" + e.getMessage());
+            logger.warn("Change backup server failed! error={}", e.getMessage());
         }
     }
 }
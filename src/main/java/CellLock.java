@@ -0,0 +1,29 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class CellLock {
+
+    private static final int FREE = 0;
+    private static final int CLAIMED = 1;
+
+    private final int gridSize;
+    // one claim flag per cell, indexed by x * gridSize + y
+    private final AtomicIntegerArray claims;
+
+    public CellLock(int gridSize) {
+        this.gridSize = gridSize;
+        this.claims = new AtomicIntegerArray(gridSize * gridSize);
+    }
+
+    public boolean tryLock(Position position) {
+        if (!position.isValid(this.gridSize)) {
+            return false;
+        }
+        return this.claims.compareAndSet(position.getCellIndex(this.gridSize), FREE, CLAIMED);
+    }
+
+    public void unlock(Position position) {
+        if (position.isValid(this.gridSize)) {
+            this.claims.set(position.getCellIndex(this.gridSize), FREE);
+        }
+    }
+}
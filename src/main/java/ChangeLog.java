@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ChangeLog {
+
+    private final StateChange[] ring;
+    private volatile long lastSequence;
+
+    public ChangeLog(int capacity, long lastSequence) {
+        this.ring = new StateChange[capacity];
+        this.lastSequence = lastSequence;
+    }
+
+    public long getLastSequence() {
+        return this.lastSequence;
+    }
+
+    public synchronized long nextSequence() {
+        return this.lastSequence + 1;
+    }
+
+    public synchronized void append(StateChange change) {
+        if (change.getSequence() != this.lastSequence + 1) {
+            throw new IllegalArgumentException("Out of order change, expected sequence " + (this.lastSequence + 1)
+                    + " but was " + change.getSequence());
+        }
+        this.ring[(int) (change.getSequence() % this.ring.length)] = change;
+        this.lastSequence = change.getSequence();
+    }
+
+    /**
+     * @return changes after the given sequence in order, null if some of them are no longer kept
+     */
+    public synchronized List<StateChange> since(long sequence) {
+        if (sequence == this.lastSequence) {
+            return Collections.emptyList();
+        }
+        if (sequence > this.lastSequence) {
+            // the reader has seen a history this log does not know about
+            return null;
+        }
+        long oldest = Math.max(1, this.lastSequence - this.ring.length + 1);
+        if (sequence + 1 < oldest) {
+            return null;
+        }
+        List<StateChange> changes = new ArrayList<>((int) (this.lastSequence - sequence));
+        for (long seq = sequence + 1; seq <= this.lastSequence; seq++) {
+            StateChange change = this.ring[(int) (seq % this.ring.length)];
+            if (change == null || change.getSequence() != seq) {
+                return null;
+            }
+            changes.add(change);
+        }
+        return changes;
+    }
+}
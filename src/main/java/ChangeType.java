@@ -0,0 +1,7 @@
+public enum ChangeType {
+    PLAYER_JOINED,
+    PLAYER_LEFT,
+    PLAYER_MOVED,
+    POINTS_CHANGED,
+    TREASURE_MOVED
+}
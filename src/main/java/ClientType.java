@@ -1,5 +1,6 @@
 public enum ClientType {
     PLAYER,
     PRIMARY_SERVER,
-    BACKUP_SERVER
+    BACKUP_SERVER,
+    READ_REPLICA
 }
@@ -0,0 +1,74 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs commands one at a time on a single writer thread. Callers block on the command's future, or
+ * chain on it, so commands see each other's effects in submission order without any locking between them.
+ */
+public class CommandLoop {
+
+    private final ScheduledExecutorService writer;
+    private volatile Thread writerThread;
+
+    public CommandLoop(String name) {
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            this.writerThread = thread;
+            return thread;
+        });
+    }
+
+    public boolean isWriterThread() {
+        return Thread.currentThread() == this.writerThread;
+    }
+
+    public <T> T call(Supplier<T> command) {
+        if (this.isWriterThread()) {
+            // a command issuing another command would otherwise wait for itself
+            return command.get();
+        }
+        return join(CompletableFuture.supplyAsync(command, this.writer));
+    }
+
+    /**
+     * @return the result of the command once the writer ran it, for callers that must not block
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> command) {
+        if (!this.isWriterThread()) {
+            return CompletableFuture.supplyAsync(command, this.writer);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            result.complete(command.get());
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Waits for the future, rethrowing a runtime exception it failed with as it is.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the task on the writer thread every period, in between the submitted commands.
+     */
+    public void scheduleAtFixedRate(Runnable task, long periodMillis) {
+        this.writer.scheduleAtFixedRate(task, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -7,6 +7,7 @@ public final class Constants {
     public static final int DEFAULT_RMI_REGISTRY_PORT = 1099;
     public static final int PRIMARY_SERVER_PORT = 5223;
     public static final int BACKUP_SERVER_PORT = 5224;
+    public static final int PRIMARY_SERVER_NIO_PORT = 5225;
 
     public static final String DEFAULT_RMI_REGISTRY_HOST = null;
 
@@ -14,4 +15,65 @@ public final class Constants {
     public static final String BACKUP_GAME_SERVER_STUB_NAME = "BackupGameServer";
 
     public static final String TRACKER_STUB_NAME = "Tracker";
+
+    public static final int CHANGE_LOG_CAPACITY = 4096;
+
+    // players ping the tracker once per interval
+    public static final long HEARTBEAT_INTERVAL_MILLIS = 500;
+    public static final long HEARTBEAT_MAX_TIMEOUT_MILLIS = 10000;
+    public static final long HEARTBEAT_WHEEL_TICK_MILLIS = 25;
+    // longest a player waits on the tracker for a new game server before trying the old one again
+    public static final long SERVER_CHANGE_WAIT_MILLIS = 5000;
+
+    public static final String FAILURE_DETECTOR_PROPERTY_PREFIX = "maze.fd.";
+    public static final int FAILURE_DETECTOR_WINDOW = 100;
+    public static final long DEFAULT_MIN_STD_DEVIATION_MILLIS = 50;
+    // a promoted primary does not ping while it takes over the game state
+    public static final double DEFAULT_PRIMARY_PHI_THRESHOLD = 10;
+    public static final long DEFAULT_PRIMARY_ACCEPTABLE_PAUSE_MILLIS = 1000;
+    public static final double DEFAULT_BACKUP_PHI_THRESHOLD = 8;
+    public static final long DEFAULT_BACKUP_ACCEPTABLE_PAUSE_MILLIS = 500;
+    public static final double DEFAULT_PLAYER_PHI_THRESHOLD = 8;
+    public static final long DEFAULT_PLAYER_ACCEPTABLE_PAUSE_MILLIS = 200;
+
+    public static final String REGIONS_PROPERTY = "maze.regions";
+
+    public static final String REPLICATION_MODE_PROPERTY = "maze.replication.mode";
+    public static final String REPLICATION_MAX_LAG_PROPERTY = "maze.replication.maxLag";
+    // keep below CHANGE_LOG_CAPACITY, otherwise a lagging backup is resynced with snapshots
+    public static final long DEFAULT_REPLICATION_MAX_LAG = 256;
+
+    // journaling is off unless a directory is given, each region journals to a subdirectory of it
+    public static final String JOURNAL_DIR_PROPERTY = "maze.journal.dir";
+    public static final String JOURNAL_CHECKPOINT_INTERVAL_PROPERTY = "maze.journal.checkpointInterval";
+    public static final long DEFAULT_JOURNAL_CHECKPOINT_INTERVAL = 1024;
+
+    public static final int PUBLISHER_SENDERS = 4;
+    public static final int PUBLISHER_MAX_FAILURES = 3;
+    public static final String PUSH_UPDATES_PROPERTY = "maze.push";
+    // a refresh polls once no push arrived for this long, and subscribes again if the poll found changes
+    public static final long PUSH_DEADLINE_MILLIS = 5000;
+
+    // number of players hosting a read replica besides the backup server
+    public static final String READ_REPLICAS_PROPERTY = "maze.replicas";
+    public static final String READ_REPLICA_SUBSCRIPTION_PREFIX = "replica:";
+
+    public static final String ENGINE_PROPERTY = "maze.engine";
+    public static final String TICK_MILLIS_PROPERTY = "maze.engine.tickMillis";
+    public static final long DEFAULT_TICK_MILLIS = 20;
+
+    // every registered server logs its metrics once per interval, 0 turns the dump off
+    public static final String METRICS_DUMP_MILLIS_PROPERTY = "maze.metrics.dumpMillis";
+    public static final long DEFAULT_METRICS_DUMP_MILLIS = 10000;
+
+    public static final String LOG_LEVEL_PROPERTY = "maze.log.level";
+    public static final String LOG_BUFFER_SIZE_PROPERTY = "maze.log.bufferSize";
+    public static final int DEFAULT_LOG_BUFFER_SIZE = 8192;
+    // drop or block, what info and debug lines do when the log buffer is full
+    public static final String LOG_OVERFLOW_PROPERTY = "maze.log.overflow";
+
+    public static final String TRANSPORT_PROPERTY = "maze.transport";
+    public static final String NIO_WORKERS_PROPERTY = "maze.nio.workers";
+    public static final String NIO_CALL_TIMEOUT_MILLIS_PROPERTY = "maze.nio.callTimeoutMillis";
+    public static final int DEFAULT_NIO_CALL_TIMEOUT_MILLIS = 10000;
 }
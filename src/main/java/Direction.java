@@ -1,16 +1,28 @@
 public enum Direction {
-    WEST(1), SOUTH(2), EAST(3), NORTH(4);
+    WEST(1, -1, 0), SOUTH(2, 0, 1), EAST(3, 1, 0), NORTH(4, 0, -1);
 
     private final int number;
+    private final int deltaX;
+    private final int deltaY;
 
-    Direction(int number) {
+    Direction(int number, int deltaX, int deltaY) {
         this.number = number;
+        this.deltaX = deltaX;
+        this.deltaY = deltaY;
     }
 
     public int getNumber() {
         return number;
     }
 
+    public int getDeltaX() {
+        return deltaX;
+    }
+
+    public int getDeltaY() {
+        return deltaY;
+    }
+
     public static Direction getDirectionByNumber(int number) {
         for (Direction d : Direction.values()) {
             if (d.getNumber() == number) {
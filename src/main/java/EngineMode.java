@@ -0,0 +1,12 @@
+public enum EngineMode {
+    // request threads claim cells with try-locks and mutate the game state concurrently
+    LOCKING,
+    // request threads hand commands to one writer thread that applies them in order
+    SINGLE_WRITER,
+    // like SINGLE_WRITER, but moves are collected and applied in one batch per fixed tick
+    TICK;
+
+    public static EngineMode fromSystemProperties() {
+        return EngineMode.valueOf(System.getProperty(Constants.ENGINE_PROPERTY, LOCKING.name()).toUpperCase());
+    }
+}
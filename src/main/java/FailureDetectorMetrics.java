@@ -0,0 +1,93 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Detection latency and false positives of the failure detector, per client role. Detection latency is
+ * the time from the last ping of a player to the moment it is declared dead. A detection counts as false
+ * positive when the player pings again after it.
+ */
+public class FailureDetectorMetrics {
+
+	private static final int ROLES = ClientType.values().length;
+
+	private final AtomicLongArray detections = new AtomicLongArray(ROLES);
+	private final AtomicLongArray falsePositives = new AtomicLongArray(ROLES);
+	private final AtomicLongArray totalLatency = new AtomicLongArray(ROLES);
+	private final AtomicLongArray maxLatency = new AtomicLongArray(ROLES);
+	private final AtomicLong totalLateness = new AtomicLong();
+	// players declared dead, with the role they had, until they ping again or rejoin
+	private final Map<String, ClientType> suspected = new ConcurrentHashMap<>();
+
+	/**
+	 * @param lateness how long after its deadline the detection happened, bounded by the wheel tick
+	 */
+	public void recordDetection(String playerId, ClientType role, long latency, long lateness) {
+		int index = role.ordinal();
+		this.detections.incrementAndGet(index);
+		this.totalLatency.addAndGet(index, latency);
+		this.maxLatency.accumulateAndGet(index, latency, Math::max);
+		this.totalLateness.addAndGet(lateness);
+		this.suspected.put(playerId, role);
+	}
+
+	/**
+	 * @return true if the player had been declared dead before
+	 */
+	public boolean recordPing(String playerId) {
+		ClientType role = this.suspected.remove(playerId);
+		if (role == null) {
+			return false;
+		}
+		this.falsePositives.incrementAndGet(role.ordinal());
+		return true;
+	}
+
+	public void forget(String playerId) {
+		this.suspected.remove(playerId);
+	}
+
+	public long getDetections(ClientType role) {
+		return this.detections.get(role.ordinal());
+	}
+
+	public long getFalsePositives(ClientType role) {
+		return this.falsePositives.get(role.ordinal());
+	}
+
+	public double getFalsePositiveRate(ClientType role) {
+		long detections = this.getDetections(role);
+		return detections == 0 ? 0 : (double) this.getFalsePositives(role) / detections;
+	}
+
+	public long getMeanDetectionLatency(ClientType role) {
+		long detections = this.getDetections(role);
+		return detections == 0 ? 0 : this.totalLatency.get(role.ordinal()) / detections;
+	}
+
+	public long getMaxDetectionLatency(ClientType role) {
+		return this.maxLatency.get(role.ordinal());
+	}
+
+	public long getMeanLateness() {
+		long detections = 0;
+		for (int i = 0; i < ROLES; i++) {
+			detections += this.detections.get(i);
+		}
+		return detections == 0 ? 0 : this.totalLateness.get() / detections;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("FailureDetectorMetrics{");
+		for (ClientType role : ClientType.values()) {
+			builder.append(role.name()).append("={detections=").append(this.getDetections(role))
+					.append(", falsePositives=").append(this.getFalsePositives(role))
+					.append(String.format(", falsePositiveRate=%.3f", this.getFalsePositiveRate(role)))
+					.append(", meanLatency=").append(this.getMeanDetectionLatency(role))
+					.append("ms, maxLatency=").append(this.getMaxDetectionLatency(role)).append("ms}, ");
+		}
+		return builder.append("meanLateness=").append(this.getMeanLateness()).append("ms}").toString();
+	}
+}
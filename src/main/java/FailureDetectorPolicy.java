@@ -0,0 +1,74 @@
+/**
+ * Suspicion settings of the phi accrual failure detector for one client role. Losing a primary or backup
+ * server costs a failover, so they are given more room than normal players before they are declared dead.
+ * Every setting can be overridden with maze.fd.[primary|backup|player].[threshold|pauseMillis|minStdMillis].
+ */
+public class FailureDetectorPolicy {
+
+	private static final FailureDetectorPolicy PRIMARY = fromSystemProperties(ClientType.PRIMARY_SERVER, "primary",
+			Constants.DEFAULT_PRIMARY_PHI_THRESHOLD, Constants.DEFAULT_PRIMARY_ACCEPTABLE_PAUSE_MILLIS);
+	private static final FailureDetectorPolicy BACKUP = fromSystemProperties(ClientType.BACKUP_SERVER, "backup",
+			Constants.DEFAULT_BACKUP_PHI_THRESHOLD, Constants.DEFAULT_BACKUP_ACCEPTABLE_PAUSE_MILLIS);
+	private static final FailureDetectorPolicy PLAYER = fromSystemProperties(ClientType.PLAYER, "player",
+			Constants.DEFAULT_PLAYER_PHI_THRESHOLD, Constants.DEFAULT_PLAYER_ACCEPTABLE_PAUSE_MILLIS);
+
+	private final ClientType role;
+	private final double threshold;
+	private final long acceptablePauseMillis;
+	private final long minStdDeviationMillis;
+	// how many standard deviations past the mean interval phi reaches the threshold
+	private final double thresholdDeviations;
+
+	public FailureDetectorPolicy(ClientType role, double threshold, long acceptablePauseMillis, long minStdDeviationMillis) {
+		this.role = role;
+		this.threshold = threshold;
+		this.acceptablePauseMillis = acceptablePauseMillis;
+		this.minStdDeviationMillis = minStdDeviationMillis;
+		this.thresholdDeviations = PhiAccrualDetector.deviationsForPhi(threshold);
+	}
+
+	public static FailureDetectorPolicy forRole(ClientType role) {
+		switch (role) {
+			case PRIMARY_SERVER:
+				return PRIMARY;
+			case BACKUP_SERVER:
+				return BACKUP;
+			default:
+				return PLAYER;
+		}
+	}
+
+	private static FailureDetectorPolicy fromSystemProperties(ClientType role, String name, double threshold, long pauseMillis) {
+		String prefix = Constants.FAILURE_DETECTOR_PROPERTY_PREFIX + name + ".";
+		return new FailureDetectorPolicy(role,
+				Double.parseDouble(System.getProperty(prefix + "threshold", String.valueOf(threshold))),
+				Long.getLong(prefix + "pauseMillis", pauseMillis),
+				Long.getLong(prefix + "minStdMillis", Constants.DEFAULT_MIN_STD_DEVIATION_MILLIS));
+	}
+
+	public ClientType getRole() {
+		return role;
+	}
+
+	public double getThreshold() {
+		return threshold;
+	}
+
+	public long getAcceptablePauseMillis() {
+		return acceptablePauseMillis;
+	}
+
+	public long getMinStdDeviationMillis() {
+		return minStdDeviationMillis;
+	}
+
+	public double getThresholdDeviations() {
+		return thresholdDeviations;
+	}
+
+	@Override
+	public String toString() {
+		return role.name() + "{threshold=" + threshold + ", pause=" + acceptablePauseMillis
+				+ "ms, minStd=" + minStdDeviationMillis + "ms}";
+	}
+}
@@ -1,7 +1,10 @@
+import java.net.InetSocketAddress;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
 import java.util.Scanner;
 
 public class Game extends GameMeta {
@@ -12,7 +15,7 @@ public class Game extends GameMeta {
 
     private final String trackerHost;
 
-    private GameStateData gameStateData;
+    private volatile GameStateData gameStateData;
 
     private GameServer primaryServer;
 
@@ -28,6 +31,25 @@ public class Game extends GameMeta {
 
     private GameGui gui;
 
+    private IGameSubscriber subscriberStub;
+
+    private volatile boolean subscribed;
+    // when the last push arrived, a publisher that keeps failing drops the subscription without a word
+    private volatile long lastPushMillis;
+
+    // primaries announced by the tracker with the server epoch they belong to
+    private volatile IGameServer[] knownServers;
+    private volatile long serverEpoch = -1;
+    // epoch and primaries the current game server connection was made for
+    private long connectedEpoch = -1;
+    private IGameServer[] connectedServers;
+    // read replicas announced together with the primaries, and the one this player hosts
+    private volatile IReadReplica[] knownReplicas;
+    private volatile ReadReplica readReplica;
+
+    // region this player serves as primary or backup server when the grid is sharded
+    private int servedRegion;
+
     public Game(String playerID, String trackerHost) {
         super();
         this.playerID = playerID;
@@ -90,6 +112,41 @@ public class Game extends GameMeta {
         this.gui = gui;
     }
 
+    public int getServedRegion() {
+        return servedRegion;
+    }
+
+    public long getServerEpoch() {
+        return serverEpoch;
+    }
+
+    /**
+     * Takes the primaries from a tracker reply if it announces a new server epoch. The game switches to
+     * them before its next operation.
+     */
+    public void onServerChange(PingReply reply) {
+        if (reply.getPrimaryServers() != null) {
+            this.knownServers = reply.getPrimaryServers();
+            this.knownReplicas = reply.getReadReplicas();
+            this.serverEpoch = reply.getEpoch();
+            ReadReplica readReplica = this.readReplica;
+            if (readReplica != null && reply.getPrimaryServers().length > 0) {
+                readReplica.follow(reply.getPrimaryServers()[0]);
+            }
+        }
+    }
+
+    public void refreshServedRegion() {
+        if (!RegionMap.of(this).isSharded()) {
+            return;
+        }
+        try {
+            this.servedRegion = Math.max(0, this.tracker.getRegion(this.playerID));
+        } catch (RemoteException e) {
+            logger.warn("Failed to get served region from tracker, player={}", this.playerID);
+        }
+    }
+
     public void registerPrimaryServer() {
         GameServer gameServer = new GameServer(this);
         gameServer.initialize();
@@ -102,6 +159,20 @@ public class Game extends GameMeta {
         this.backupServer = backupServer;
     }
 
+    public void registerReadReplica() {
+        ReadReplica readReplica = new ReadReplica(this.playerID, this.getGridSize());
+        this.readReplica = readReplica;
+        readReplica.initialize(this.playerID, this.registry, this.tracker);
+    }
+
+    public void closeReadReplica() {
+        ReadReplica readReplica = this.readReplica;
+        if (readReplica != null) {
+            this.readReplica = null;
+            readReplica.close();
+        }
+    }
+
     private ClientType addPlayerToTracker() {
         ClientType type = null;
 
@@ -112,7 +183,8 @@ public class Game extends GameMeta {
             System.exit(0);
         }
 
-        logger.info("Client type is " + type.name());
+        logger.info("Client type is {}", type.name());
+        this.refreshServedRegion();
         statusChecker = new StatusChecker(type, this);
         statusChecker.start();
 
@@ -120,58 +192,176 @@ public class Game extends GameMeta {
             this.registerPrimaryServer();
         } else if (type == ClientType.BACKUP_SERVER) {
             this.registerBackupServer();
+        } else if (type == ClientType.READ_REPLICA) {
+            this.registerReadReplica();
         }
 
         return type;
     }
 
     private void addPlayerToServer() throws RemoteException {
-        this.gameStateData = this.gameServer.addPlayer(this.playerID);
+        GameStateData data = this.gameServer.addPlayer(this.playerID);
+        synchronized (this) {
+            this.gameStateData = data;
+        }
     }
 
-    public boolean operate(String operation) throws Exception {
+    private long getGameStateVersion() {
+        return this.gameStateData == null ? -1 : this.gameStateData.getVersion();
+    }
+
+    private void applyDelta(GameStateDelta delta) throws RemoteException {
+        if (!this.tryApplyDelta(delta)) {
+            // fetched without holding the monitor, so pushes and replies are not held up by the call
+            logger.warn("Game data delta does not match local version, fetching full game data");
+            this.tryApplyDelta(GameStateDelta.ofSnapshot(this.gameServer.getGameData()));
+        }
+    }
+
+    /**
+     * Applies the delta unless the local data is as new already. Pushes and replies race, so one may
+     * arrive after a newer one was applied, and its server names are as old as its data.
+     * @return false if the changes do not continue from the local data
+     */
+    private synchronized boolean tryApplyDelta(GameStateDelta delta) {
+        GameStateData current = this.gameStateData;
+        if (current != null && delta.getVersion() <= current.getVersion()) {
+            return true;
+        }
+        if (delta.isSnapshot()) {
+            this.gameStateData = delta.getSnapshot();
+            return true;
+        }
+        // pushes render from another thread, so changes go to a copy that replaces the data
+        GameStateData data = current == null ? null : new GameStateData(current);
+        if (data == null || !data.applyChanges(delta.getChanges())) {
+            return false;
+        }
+        data.setPrimaryServer(delta.getPrimaryServer());
+        data.setBackupServer(delta.getBackupServer());
+        this.gameStateData = data;
+        return true;
+    }
+
+    public void onGameUpdate(GameStateDelta delta) throws RemoteException {
+        this.lastPushMillis = System.currentTimeMillis();
+        this.applyDelta(delta);
+        GameGui gui = this.gui;
+        if (gui != null) {
+            gui.render(this.gameStateData);
+        }
+    }
+
+    private void trySubscribe() {
+        this.subscribed = false;
+        if (!Boolean.parseBoolean(System.getProperty(Constants.PUSH_UPDATES_PROPERTY, "true"))
+                || RegionMap.of(this).isSharded()) {
+            return;
+        }
         try {
-            // Return value for handling fault
-            switch (operation) {
-                case "0":
-                    logger.info("Refresh");
-                    this.gameStateData = gameServer.getGameData();
-                    return true;
-                case "1":
-                case "2":
-                case "3":
-                case "4":
-                    int directionNumber = Integer.parseInt(operation);
-                    Direction direction = Direction.getDirectionByNumber(directionNumber);
-                    logger.info("Player move to " + direction.name());
-                    this.gameStateData = gameServer.movePlayer(playerID, direction);
-                    return true;
-                case "9":
-                    logger.info("Quit");
-                    try {
-                        tracker.quit(playerID);
-                    } catch (RemoteException e) {
-                        logger.error("Failed to quit player" + playerID);
-                        System.exit(0);
+            if (this.subscriberStub == null) {
+                this.subscriberStub = (IGameSubscriber) UnicastRemoteObject.exportObject(new GameSubscriber(this), 0);
+            }
+            this.gameServer.subscribe(this.playerID, this.subscriberStub, this.getGameStateVersion());
+            this.lastPushMillis = System.currentTimeMillis();
+            this.subscribed = true;
+        } catch (Exception e) {
+            logger.warn("Subscribing to game updates failed, refresh will poll the server. error={}", e.getMessage());
+        }
+    }
+
+    public boolean operate(String operation) throws Exception {
+        long failedAt = 0;
+        while (true) {
+            long epoch = this.serverEpoch;
+            try {
+                this.switchToAnnouncedServer();
+                boolean result = this.doOperate(operation);
+                if (failedAt != 0) {
+                    logger.info("Game server failover took {}ms", System.currentTimeMillis() - failedAt);
+                }
+                return result;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                if (failedAt == 0) {
+                    failedAt = System.currentTimeMillis();
+                }
+                logger.warn("Game operation failed, waiting for the tracker to announce a game server.");
+                this.awaitServerChange(epoch);
+                this.lookupGameServer();
+            }
+        }
+    }
+
+    private boolean doOperate(String operation) throws Exception {
+        // Return value for handling fault
+        switch (operation) {
+            case "0":
+                logger.info("Refresh");
+                // with a subscription the local data is kept up to date by pushes, unless they stopped
+                boolean pushed = this.subscribed
+                        && System.currentTimeMillis() - this.lastPushMillis < Constants.PUSH_DEADLINE_MILLIS;
+                if (!pushed) {
+                    long version = this.getGameStateVersion();
+                    this.applyDelta(this.readGameDataSince(version));
+                    if (this.subscribed && this.getGameStateVersion() > version) {
+                        logger.warn("Game changed without a push, subscribing to game updates again");
+                        this.trySubscribe();
                     }
-                    return true;
+                }
+                return true;
+            case "1":
+            case "2":
+            case "3":
+            case "4":
+                int directionNumber = Integer.parseInt(operation);
+                Direction direction = Direction.getDirectionByNumber(directionNumber);
+                logger.info("Player move to {}", direction);
+                this.applyDelta(gameServer.movePlayerSince(playerID, direction, this.getGameStateVersion()));
+                return true;
+            case "9":
+                logger.info("Quit");
+                try {
+                    tracker.quit(playerID);
+                } catch (RemoteException e) {
+                    logger.error("Failed to quit player {}", playerID);
+                    System.exit(0);
+                }
+                return true;
+
+            default:
+                logger.warn("Invalid operation");
+                return false;
+        }
+    }
 
-                default:
-                    logger.warn("Invalid operation");
-                    return false;
+    /**
+     * Reads a refresh from a read replica if the tracker announced any, the primary server answers if the
+     * replica fails or is behind the local data.
+     */
+    private GameStateDelta readGameDataSince(long version) throws RemoteException {
+        IReadReplica[] replicas = this.knownReplicas;
+        if (replicas != null && replicas.length > 0) {
+            // players spread over the replicas, each sticking to one so its reads stay monotonic
+            IReadReplica replica = replicas[Math.floorMod(this.playerID.hashCode(), replicas.length)];
+            try {
+                GameStateDelta delta = replica.getGameDataSince(version);
+                if (delta.getVersion() >= version) {
+                    return delta;
+                }
+            } catch (RemoteException e) {
+                logger.warn("Read replica failed, refreshing from the game server. error={}", e.getMessage());
             }
-        } catch (Exception e) {
-            logger.warn("Game operation failed, re-lookup game server.");
-            this.lookupGameServer();
-            return operate(operation);
         }
+        return this.gameServer.getGameDataSince(version);
     }
 
     public void quit(Tracker tracker) {
         try {
             tracker.quit(playerID);
         } catch (RemoteException e) {
-            logger.warn("Failed to quit player" + playerID);
+            logger.warn("Failed to quit player {}", playerID);
             System.exit(0);
         }
 
@@ -191,6 +381,7 @@ public class Game extends GameMeta {
         trackerHost = args[0];
 
         final Game game = new Game(playerID, trackerHost);
+        Metrics.startJmx();
         try {
             Registry trackerRegistry = LocateRegistry.getRegistry(trackerHost, Constants.DEFAULT_RMI_REGISTRY_PORT);
             ITracker tracker = (ITracker) trackerRegistry.lookup(Constants.TRACKER_STUB_NAME);
@@ -252,32 +443,90 @@ public class Game extends GameMeta {
         while (true) {
             try {
                 this.addPlayerToServer();
-                logger.info("Player successfully added to server! player=" + this.playerID);
+                logger.info("Player successfully added to server! player={}", this.playerID);
                 break;
             } catch (Exception e) {
                 logger.warn("Add player to server failed, retrying...");
                 try {
                     lookupGameServer();
                 } catch (Exception exception) {
-                    logger.warn("Looking up server interrupted! player=" + this.playerID);
+                    logger.warn("Looking up server interrupted! player={}", this.playerID);
                     exception.printStackTrace();
                 }
             }
         }
     }
 
+    private IGameServer connectGameServer(IGameServer stub, IGameServer[] servers) throws Exception {
+        if (RegionMap.of(this).isSharded()) {
+            // moves are routed to the primary of the region the player stands in
+            ShardedGameServerClient client = new ShardedGameServerClient(this.registry, RegionMap.of(this), servers);
+            client.lookupRegionServers();
+            return client;
+        }
+        if (this.gameServer instanceof NioGameServerClient) {
+            ((NioGameServerClient) this.gameServer).close();
+        }
+        if (TransportMode.fromSystemProperties() == TransportMode.NIO) {
+            InetSocketAddress address = stub.getNioAddress();
+            if (address != null) {
+                return new NioGameServerClient(address, stub);
+            }
+            logger.warn("Game server has no NIO endpoint, using RMI");
+        }
+        return stub;
+    }
+
     private void lookupGameServer() throws InterruptedException {
         while (true) {
+            long epoch = this.serverEpoch;
+            IGameServer[] servers = this.knownServers;
             try {
-                this.gameServer = (IGameServer) this.registry.lookup(Constants.PRIMARY_GAME_SERVER_STUB_NAME);
+                IGameServer stub = servers == null ? null : servers[0];
+                if (stub == null) {
+                    // nothing announced by the tracker yet, e.g. before the first ping
+                    stub = (IGameServer) this.registry.lookup(Constants.PRIMARY_GAME_SERVER_STUB_NAME);
+                }
+                this.gameServer = this.connectGameServer(stub, servers);
+                this.connectedEpoch = epoch;
+                this.connectedServers = servers;
                 logger.info("Game server found!");
+                this.trySubscribe();
                 break;
             } catch (Exception e) {
-                logger.info("Retry finding server in 0.1 seconds...");
-                Thread.sleep(100);
+                logger.info("Game server not available, waiting for the tracker to announce one...");
+                this.awaitServerChange(epoch);
             }
         }
     }
 
+    /**
+     * Switches to the primaries the tracker announced since the connection was made, so a failover does
+     * not have to wait for an operation to fail first.
+     */
+    private void switchToAnnouncedServer() throws InterruptedException {
+        long epoch = this.serverEpoch;
+        IGameServer[] servers = this.knownServers;
+        if (epoch == this.connectedEpoch) {
+            return;
+        }
+        if (servers == null || servers[0] == null || Arrays.equals(servers, this.connectedServers)) {
+            // a backup change or a primary that is not ready yet, the current connection stays
+            this.connectedEpoch = epoch;
+            return;
+        }
+        logger.info("Tracker announced a new game server");
+        this.lookupGameServer();
+    }
+
+    private void awaitServerChange(long epoch) throws InterruptedException {
+        try {
+            this.onServerChange(this.tracker.awaitServerChange(this.playerID, epoch, Constants.SERVER_CHANGE_WAIT_MILLIS));
+        } catch (RemoteException e) {
+            logger.warn("Failed to wait for a server change on the tracker, player={}", this.playerID);
+            Thread.sleep(Constants.HEARTBEAT_INTERVAL_MILLIS);
+        }
+    }
+
 
 }
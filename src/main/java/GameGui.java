@@ -1,41 +1,56 @@
 import javax.swing.JFrame;
-import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 import java.awt.BorderLayout;
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class GameGui extends GameMeta {
 
     private static final Logger logger = Logger.getLogger(GameGui.class);
 
-    private static final String TABLE_STYLE = "<style> td { border:1px solid black; } </style>";
-    private static final String NEW_LINE = "<br />";
-    private static final String HTML_TAG = "<html>";
-    private static final String TABLE_TAG = "<table>";
-    private static final String TR_TAG = "<tr>";
-    private static final String TD_TAG = "<td>";
-    private static final String HTML_TAG_CLOSE = "</html>";
-    private static final String TABLE_TAG_CLOSE = "</table>";
-    private static final String TR_TAG_CLOSE = "</tr>";
-    private static final String TD_TAG_CLOSE = "</td>";
+    // the leaderboard lists the leading players and the local one, not every player of a large game
+    private static final int LEADERBOARD_SIZE = 20;
 
-    private final JLabel leaderBoard = new JLabel("Loading LeaderBoard...");
-    private final JLabel maze = new JLabel("Loading Maze...");
+    private final JTextArea leaderBoard = new JTextArea("Loading LeaderBoard...");
+    private final MazeView maze;
+    private String playerId;
+    private String leaderBoardText = "";
+    private int localPlayerCell = -1;
+    // the data of the last frame and the cells the next one changes, new data comes as a new instance
+    private GameStateData previous;
+    private final Map<Integer, String> changedCells = new HashMap<>();
 
     public GameGui(GameMeta meta) {
         super(meta);
+        this.maze = new MazeView(meta.getGridSize());
+        this.leaderBoard.setEditable(false);
+        this.leaderBoard.setOpaque(false);
+        this.leaderBoard.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    }
+
+    public MazeView getMazeView() {
+        return this.maze;
     }
 
     public void initialize(String playerId) {
+        this.playerId = playerId;
+        this.maze.setLocalPlayerId(playerId);
         try {
             JFrame frame = new JFrame(playerId);
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-            frame.setSize(600, 500);
+            frame.setSize(800, 600);
 
             EmptyBorder border = new EmptyBorder(10, 10, 10, 10);
 
@@ -43,56 +58,131 @@ public class GameGui extends GameMeta {
             panel1.setBorder(border);
             panel1.add(this.leaderBoard);
 
-            JPanel panel2 = new JPanel();
-            panel2.setBorder(border);
-            panel2.add(this.maze);
+            JScrollPane scrollPane = new JScrollPane(this.maze);
+            scrollPane.setBorder(border);
+            scrollPane.getVerticalScrollBar().setUnitIncrement(MazeView.CELL_SIZE);
+            scrollPane.getHorizontalScrollBar().setUnitIncrement(MazeView.CELL_SIZE);
 
             frame.getContentPane().add(BorderLayout.WEST, panel1);
-            frame.getContentPane().add(BorderLayout.EAST, panel2);
+            frame.getContentPane().add(BorderLayout.CENTER, scrollPane);
             frame.setVisible(true);
         } catch (Exception e) {
-            logger.error("Error happens when initializing UI, playerId=" + playerId);
+            logger.error("Error happens when initializing UI, playerId={}", playerId);
             e.printStackTrace();
         }
     }
 
-    public void render(GameStateData data) {
-        // update leaderboard
-        List<PlayerInfo> players = data.getPlayerMap().values().stream().sorted().collect(Collectors.toList());
-        StringBuilder sb1 = new StringBuilder(HTML_TAG);
-        for (PlayerInfo player : players) {
-            sb1.append(player.getId()).append(": ").append(player.getPoints()).append("pts").append(NEW_LINE);
+    /**
+     * Shows the game data. Only cells that changed since the last frame are repainted, and the view
+     * scrolls to keep the local player in the centre.
+     */
+    public synchronized void render(GameStateData data) {
+        GameStateData previous = this.previous;
+        this.previous = data;
+        if (previous == null || data.getVersion() != previous.getVersion()) {
+            this.maze.update(this.changedCells(previous, data));
         }
-        String backupServer = data.getBackupServer() != null ? data.getBackupServer() : "";
-        sb1.append(NEW_LINE).append("Primary: ").append(data.getPrimaryServer());
-        sb1.append(NEW_LINE).append("Backup: ").append(backupServer);
-        sb1.append(HTML_TAG_CLOSE);
-        this.leaderBoard.setText(sb1.toString());
-
-        // update maze
-        Set<Position> treasurePositions = data.getTreasurePositions();
-        Map<Position, PlayerInfo> playerMap = players.stream().collect(
-                Collectors.toMap(PlayerInfo::getPosition, Function.identity())
-        );
-        StringBuilder sb2 = new StringBuilder(HTML_TAG).append(TABLE_STYLE).append(TABLE_TAG);
-        for (int y = 0; y < this.getGridSize(); y++) {
-            sb2.append(TR_TAG);
-            for (int x = 0; x < this.getGridSize(); x++) {
-                sb2.append(TD_TAG);
-                Position pos = new Position(x, y);
-                if (treasurePositions.contains(pos)) {
-                    sb2.append("**&nbsp&nbsp");
-                } else if (playerMap.containsKey(pos)) {
-                    sb2.append(playerMap.get(pos).getId());
-                } else {
-                    sb2.append("&nbsp&nbsp&nbsp&nbsp&nbsp");
-                }
-                sb2.append(TD_TAG_CLOSE);
+
+        PlayerInfo localPlayer = data.getPlayerMap().get(this.playerId);
+        int localPlayerCell = localPlayer == null ? -1 : localPlayer.getPosition().getCellIndex(this.getGridSize());
+        if (localPlayerCell >= 0 && localPlayerCell != this.localPlayerCell) {
+            this.localPlayerCell = localPlayerCell;
+            Rectangle cell = this.maze.getCellBounds(localPlayerCell);
+            SwingUtilities.invokeLater(() -> this.centreOn(cell));
+        }
+
+        String text = this.leaderBoardText(data);
+        if (!text.equals(this.leaderBoardText)) {
+            this.leaderBoardText = text;
+            SwingUtilities.invokeLater(() -> this.leaderBoard.setText(text));
+        }
+    }
+
+    /**
+     * @return the new occupant of every cell whose occupant may differ between the frames, null for
+     *      cells that became empty
+     */
+    private Map<Integer, String> changedCells(GameStateData previous, GameStateData data) {
+        int gridSize = this.getGridSize();
+        Map<String, PlayerInfo> players = data.getPlayerMap();
+        Set<Position> treasures = data.getTreasurePositions();
+        Map<String, PlayerInfo> previousPlayers = previous == null ? Collections.emptyMap() : previous.getPlayerMap();
+        Set<Position> previousTreasures = previous == null ? Collections.emptySet() : previous.getTreasurePositions();
+        Map<Integer, String> changed = this.changedCells;
+        changed.clear();
+        // cells players left come first, another player may have stepped into one of them
+        for (PlayerInfo player : previousPlayers.values()) {
+            PlayerInfo now = players.get(player.getId());
+            if (now == null || !now.getPosition().equals(player.getPosition())) {
+                changed.put(player.getPosition().getCellIndex(gridSize), null);
+            }
+        }
+        for (PlayerInfo player : players.values()) {
+            PlayerInfo before = previousPlayers.get(player.getId());
+            if (before == null || !before.getPosition().equals(player.getPosition())) {
+                changed.put(player.getPosition().getCellIndex(gridSize), player.getId());
+            }
+        }
+        for (Position treasure : previousTreasures) {
+            if (!treasures.contains(treasure)) {
+                // the player who collected it stepped in, unless it moved on before this frame
+                changed.putIfAbsent(treasure.getCellIndex(gridSize), null);
+            }
+        }
+        for (Position treasure : treasures) {
+            if (!previousTreasures.contains(treasure)) {
+                changed.put(treasure.getCellIndex(gridSize), MazeView.TREASURE_LABEL);
             }
-            sb2.append(TR_TAG_CLOSE);
         }
-        sb2.append(TABLE_TAG_CLOSE);
-        sb2.append(HTML_TAG_CLOSE);
-        this.maze.setText(sb2.toString());
+        for (Map.Entry<Integer, String> cell : changed.entrySet()) {
+            // a treasure shows over a player standing on it, as it always has, and stays when the player leaves
+            if (treasures.contains(Position.ofCell(gridSize, cell.getKey()))) {
+                cell.setValue(MazeView.TREASURE_LABEL);
+            }
+        }
+        return changed;
+    }
+
+    private void centreOn(Rectangle cell) {
+        Rectangle visible = this.maze.getVisibleRect();
+        if (visible.isEmpty()) {
+            return;
+        }
+        // scrolling by the viewport blits the old frame and paints only the uncovered strip
+        this.maze.scrollRectToVisible(new Rectangle(cell.x + cell.width / 2 - visible.width / 2,
+                cell.y + cell.height / 2 - visible.height / 2, visible.width, visible.height));
+    }
+
+    private String leaderBoardText(GameStateData data) {
+        // the leading players are picked without sorting everyone, the local player is ranked by counting
+        PriorityQueue<PlayerInfo> leaders = new PriorityQueue<>(LEADERBOARD_SIZE + 1, Comparator.reverseOrder());
+        PlayerInfo localPlayer = data.getPlayerMap().get(this.playerId);
+        int localRank = 1;
+        for (PlayerInfo player : data.getPlayerMap().values()) {
+            leaders.add(player);
+            if (leaders.size() > LEADERBOARD_SIZE) {
+                leaders.poll();
+            }
+            if (localPlayer != null && player.compareTo(localPlayer) < 0) {
+                localRank++;
+            }
+        }
+        List<PlayerInfo> players = new ArrayList<>(leaders);
+        Collections.sort(players);
+        StringBuilder sb = new StringBuilder();
+        for (PlayerInfo player : players) {
+            sb.append(player.getId()).append(": ").append(player.getPoints()).append("pts\n");
+        }
+        if (localPlayer != null && localRank > LEADERBOARD_SIZE) {
+            sb.append("...\n").append(localRank).append(". ").append(localPlayer.getId()).append(": ")
+                    .append(localPlayer.getPoints()).append("pts\n");
+        }
+        if (data.getPlayerMap().size() > LEADERBOARD_SIZE) {
+            sb.append("(").append(data.getPlayerMap().size()).append(" players)\n");
+        }
+        String backupServer = data.getBackupServer() != null ? data.getBackupServer() : "";
+        sb.append("\nPrimary: ").append(data.getPrimaryServer());
+        sb.append("\nBackup: ").append(backupServer);
+        return sb.toString();
     }
 }
@@ -0,0 +1,396 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Local durability of a primary server, for when the primary and the backup die together. Changes are
+ * appended to a journal file by one writer thread, which forces everything queued since its last round
+ * with a single fsync, so concurrent mutations share the cost. Every checkpointInterval changes the
+ * writer stores a snapshot in one of two memory-mapped checkpoint files and empties the journal.
+ * Recovery loads the newest intact checkpoint and replays the journal up to the first torn record.
+ *
+ * Without a directory the journal is disabled and every method returns at once.
+ */
+public class GameJournal {
+
+    private static final Logger logger = Logger.getLogger(GameJournal.class);
+
+    // changes with the codec format, checkpoints of an older layout are not read
+    private static final int CHECKPOINT_MAGIC = 0x4d5a4300 | BinaryCodec.FORMAT_VERSION;
+    // magic, version, payload length and checksum
+    private static final int CHECKPOINT_HEADER_BYTES = 4 + 8 + 4 + 8;
+    // payload length and checksum
+    private static final int RECORD_HEADER_BYTES = 4 + 8;
+    private static final String JOURNAL_FILE = "journal";
+    private static final String[] CHECKPOINT_FILES = {"checkpoint-0", "checkpoint-1"};
+
+    private final Path directory;
+    private final long checkpointInterval;
+    // serialises file writes, the writer thread flushes while a new history may be started
+    private final Object writeLock = new Object();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(this.recordBytes);
+    private final ByteArrayOutputStream batchBytes = new ByteArrayOutputStream();
+    private final DataOutputStream batchOut = new DataOutputStream(this.batchBytes);
+    private volatile GameState gameState;
+    private FileChannel journal;
+    // end of the last batch on disk, a failed batch is cut back to it
+    private long journalPosition;
+    // set when the journal could not be cut back, the next flush starts over with a checkpoint
+    private boolean damaged;
+    private int nextCheckpointSlot;
+    private long checkpointVersion;
+    // last version written to the journal, and the last one known to be on disk
+    private long journaledVersion;
+    private volatile long durableVersion;
+    private volatile long syncs;
+    private volatile long records;
+    private boolean pending;
+    // syncs waiting for their version to reach the disk, guarded by this
+    private final VersionWaiters waiters = new VersionWaiters();
+    private Thread writer;
+
+    public GameJournal(Path directory, long checkpointInterval) {
+        this.directory = directory;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public static GameJournal fromSystemProperties(int region) {
+        String directory = System.getProperty(Constants.JOURNAL_DIR_PROPERTY);
+        long checkpointInterval = Long.getLong(Constants.JOURNAL_CHECKPOINT_INTERVAL_PROPERTY,
+                Constants.DEFAULT_JOURNAL_CHECKPOINT_INTERVAL);
+        return new GameJournal(directory == null ? null : Paths.get(directory, "region-" + region), checkpointInterval);
+    }
+
+    public boolean isEnabled() {
+        return this.directory != null;
+    }
+
+    public long getSyncs() {
+        return syncs;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Starts a new journal for the game state, beginning with a checkpoint of it. Files of an earlier
+     * game or history in the directory are replaced.
+     */
+    public synchronized void start(GameState gameState) {
+        if (this.directory == null) {
+            return;
+        }
+        try {
+            synchronized (this.writeLock) {
+                Files.createDirectories(this.directory);
+                this.gameState = gameState;
+                // versions of an earlier game say nothing about this one, which may start lower
+                this.durableVersion = -1;
+                this.checkpoint();
+                // the other slot may hold a newer version of an earlier game, recovery must not pick it
+                Files.deleteIfExists(this.directory.resolve(CHECKPOINT_FILES[this.nextCheckpointSlot]));
+            }
+            // syncs of an earlier game state do not wait for this one
+            VersionWaiters.complete(this.waiters.takeAll());
+            if (this.writer == null) {
+                this.writer = new Thread(this::runWriter, "game-journal");
+                this.writer.setDaemon(true);
+                this.writer.start();
+            }
+            logger.info("Journaling game state to {} from version {}", this.directory, this.checkpointVersion);
+        } catch (IOException e) {
+            logger.error("Starting game journal failed, changes are not journaled! error={}", e.getMessage());
+            this.gameState = null;
+        }
+    }
+
+    /**
+     * Waits until every change up to the current version of the game state is on disk.
+     */
+    public void sync() {
+        this.syncAsync().join();
+    }
+
+    /**
+     * @return completes once every change up to the current version of the game state is on disk, on the
+     *      writer thread unless it is there already
+     */
+    public CompletableFuture<Void> syncAsync() {
+        GameState gameState = this.gameState;
+        if (gameState == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long version = gameState.getVersion();
+        synchronized (this) {
+            if (this.durableVersion >= version || this.gameState != gameState) {
+                return CompletableFuture.completedFuture(null);
+            }
+            this.pending = true;
+            this.notifyAll();
+            return this.waiters.add(version);
+        }
+    }
+
+    public synchronized void close() {
+        if (this.writer != null) {
+            this.writer.interrupt();
+            this.writer = null;
+        }
+        synchronized (this.writeLock) {
+            this.gameState = null;
+            this.closeJournal();
+        }
+        VersionWaiters.complete(this.waiters.takeAll());
+    }
+
+    private void runWriter() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (!this.pending) {
+                        this.wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                this.pending = false;
+            }
+            // everything queued so far goes to disk with one fsync
+            synchronized (this.writeLock) {
+                GameState gameState = this.gameState;
+                try {
+                    if (gameState != null) {
+                        this.flush();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // the game goes on without durability rather than stalling every move, the next flush
+                    // writes the changes again
+                    logger.error("Writing game journal failed! error={}", e);
+                    this.durableVersion = gameState.getVersion();
+                }
+            }
+            List<CompletableFuture<Void>> reached;
+            synchronized (this) {
+                reached = this.waiters.takeUpTo(this.durableVersion);
+            }
+            VersionWaiters.complete(reached);
+        }
+    }
+
+    private void flush() throws IOException {
+        List<StateChange> changes = this.gameState.getChangesSince(this.journaledVersion);
+        if (changes == null || this.journal == null || this.damaged) {
+            // the writer fell behind the change log or lost the journal, a checkpoint covers the changes
+            this.checkpoint();
+            return;
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        this.batchBytes.reset();
+        CRC32 crc = new CRC32();
+        for (StateChange change : changes) {
+            this.recordBytes.reset();
+            change.writeTo(this.recordOut);
+            byte[] payload = this.recordBytes.toByteArray();
+            crc.reset();
+            crc.update(payload, 0, payload.length);
+            this.batchOut.writeInt(payload.length);
+            this.batchOut.writeLong(crc.getValue());
+            this.batchOut.write(payload);
+        }
+        ByteBuffer batch = ByteBuffer.wrap(this.batchBytes.toByteArray());
+        try {
+            while (batch.hasRemaining()) {
+                this.journal.write(batch);
+            }
+            this.journal.force(false);
+        } catch (IOException e) {
+            this.discardFailedBatch();
+            throw e;
+        }
+        this.journalPosition = this.journal.position();
+        this.syncs++;
+        this.records += changes.size();
+        this.journaledVersion = changes.get(changes.size() - 1).getSequence();
+        this.durableVersion = this.journaledVersion;
+        if (this.journaledVersion - this.checkpointVersion >= this.checkpointInterval) {
+            this.checkpoint();
+        }
+    }
+
+    /**
+     * Writes a snapshot to the older checkpoint slot and empties the journal once the snapshot is on
+     * disk. A crash in between leaves journal records the snapshot already covers, replay skips them.
+     */
+    private void checkpoint() throws IOException {
+        GameStateData snapshot = this.gameState.exportGameData();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        Path path = this.directory.resolve(CHECKPOINT_FILES[this.nextCheckpointSlot]);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    CHECKPOINT_HEADER_BYTES + payload.length);
+            buffer.putInt(CHECKPOINT_MAGIC).putLong(snapshot.getVersion()).putInt(payload.length)
+                    .putLong(crc.getValue()).put(payload);
+            buffer.force();
+        }
+        this.nextCheckpointSlot = 1 - this.nextCheckpointSlot;
+        this.checkpointVersion = snapshot.getVersion();
+
+        // the old journal stays until the new one is open, a failure here leaves the writer a journal
+        FileChannel journal = FileChannel.open(this.directory.resolve(JOURNAL_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.closeJournal();
+        this.journal = journal;
+        this.journalPosition = 0;
+        this.damaged = false;
+        this.journaledVersion = snapshot.getVersion();
+        this.durableVersion = Math.max(this.durableVersion, snapshot.getVersion());
+    }
+
+    /**
+     * Cuts a partly written batch off the journal, so that later batches do not follow a torn record that
+     * recovery stops at. If that fails too, the next flush starts the journal over with a checkpoint.
+     */
+    private void discardFailedBatch() {
+        try {
+            this.journal.truncate(this.journalPosition);
+            this.journal.position(this.journalPosition);
+        } catch (IOException e) {
+            this.damaged = true;
+        }
+    }
+
+    private void closeJournal() {
+        if (this.journal == null) {
+            return;
+        }
+        try {
+            this.journal.close();
+        } catch (IOException e) {
+            logger.warn("Closing game journal failed! error={}", e.getMessage());
+        }
+        this.journal = null;
+    }
+
+    /**
+     * Rebuilds the game state from the newest intact checkpoint and the journal records after it.
+     * @return the recovered state, null if the journal is disabled or holds no checkpoint
+     */
+    public GameState recover(int gridSize, int fromX, int toX) {
+        if (this.directory == null) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        GameStateData data = null;
+        for (String file : CHECKPOINT_FILES) {
+            GameStateData candidate = readCheckpoint(this.directory.resolve(file));
+            if (candidate != null && (data == null || candidate.getVersion() > data.getVersion())) {
+                data = candidate;
+            }
+        }
+        if (data == null) {
+            logger.warn("No game checkpoint found in {}", this.directory);
+            return null;
+        }
+        GameState gameState = new GameState(data, gridSize, fromX, toX);
+        List<StateChange> changes = readJournal(this.directory.resolve(JOURNAL_FILE), gridSize);
+        if (!gameState.applyChanges(changes)) {
+            logger.warn("Game journal does not continue the checkpoint, recovering the checkpoint only");
+        }
+        logger.info("Recovered game state at version {} from checkpoint {} and {} journal records in {}ms",
+                gameState.getVersion(), data.getVersion(), changes.size(), System.currentTimeMillis() - start);
+        return gameState;
+    }
+
+    private static GameStateData readCheckpoint(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < CHECKPOINT_HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != CHECKPOINT_MAGIC) {
+                return null;
+            }
+            long version = buffer.getLong();
+            int length = buffer.getInt();
+            long checksum = buffer.getLong();
+            if (length < 0 || length > buffer.remaining()) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            if (crc.getValue() != checksum) {
+                logger.warn("Game checkpoint {} is damaged, version={}", path, version);
+                return null;
+            }
+            GameStateData data = new GameStateData();
+            data.readFrom(new DataInputStream(new ByteArrayInputStream(payload)));
+            return data;
+        } catch (IOException e) {
+            logger.warn("Reading game checkpoint {} failed! error={}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<StateChange> readJournal(Path path, int gridSize) {
+        List<StateChange> changes = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return changes;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                long checksum = buffer.getLong();
+                if (length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.array(), buffer.position(), length);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+                StateChange change = new StateChange();
+                change.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.array(), buffer.position(), length)),
+                        gridSize);
+                changes.add(change);
+                buffer.position(buffer.position() + length);
+            }
+            if (buffer.hasRemaining()) {
+                // the last batch was cut off by the crash before its fsync returned
+                logger.warn("Game journal ends with a torn record, {} bytes dropped", buffer.remaining());
+            }
+        } catch (IOException e) {
+            logger.warn("Reading game journal failed! error={}", e.getMessage());
+        }
+        return changes;
+    }
+}
@@ -1,17 +1,25 @@
-import java.io.Serializable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
-public class GameMeta implements Serializable {
+public class GameMeta implements Externalizable {
 
     private static final long serialVersionUID = 3193261559498876273L;
 
     private int gridSize;
     private int treasureSize;
+    // number of regions the grid is split into, each owned by its own primary server
+    private int regionCount = 1;
 
     public GameMeta() {}
 
     public GameMeta(GameMeta that) {
         this.gridSize = that.getGridSize();
         this.treasureSize = that.getTreasureSize();
+        this.regionCount = that.getRegionCount();
     }
 
     public GameMeta(int gridSize, int treasureSize) {
@@ -19,6 +27,12 @@ public class GameMeta implements Serializable {
         this.treasureSize = treasureSize;
     }
 
+    public GameMeta(int gridSize, int treasureSize, int regionCount) {
+        this.gridSize = gridSize;
+        this.treasureSize = treasureSize;
+        this.regionCount = regionCount;
+    }
+
     public int getGridSize() {
         return gridSize;
     }
@@ -27,8 +41,37 @@ public class GameMeta implements Serializable {
         return treasureSize;
     }
 
+    public int getRegionCount() {
+        return regionCount;
+    }
+
     public void setGameMeta(GameMeta meta) {
         this.gridSize = meta.getGridSize();
         this.treasureSize = meta.getTreasureSize();
+        this.regionCount = meta.getRegionCount();
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        BinaryCodec.writeFormatVersion(out);
+        this.writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        BinaryCodec.readFormatVersion(in);
+        this.readFrom(in);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        BinaryCodec.writeVarInt(out, this.gridSize);
+        BinaryCodec.writeVarInt(out, this.treasureSize);
+        BinaryCodec.writeVarInt(out, this.regionCount);
+    }
+
+    public void readFrom(DataInput in) throws IOException {
+        this.gridSize = BinaryCodec.readVarInt(in);
+        this.treasureSize = BinaryCodec.readVarInt(in);
+        this.regionCount = BinaryCodec.readVarInt(in);
     }
 }
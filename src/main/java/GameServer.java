@@ -1,99 +1,263 @@
+import java.net.InetSocketAddress;
 import java.rmi.RemoteException;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 public class GameServer extends GameMeta implements IGameServer {
 
     private static final Logger logger = Logger.getLogger(GameServer.class);
 
     private GameState gameState;
-    private final KeyBasedLock positionLock;
-    private IBackupServer backupServer;
+    private final CellLock positionLock;
+    private final EngineMode engineMode;
+    // null in locking mode, where request threads mutate the game state themselves
+    private final CommandLoop commandLoop;
+    // moves waiting for the next tick in tick mode
+    private final Queue<PendingMove> pendingMoves = new ConcurrentLinkedQueue<>();
+    private final LongAdder replicationRounds = new LongAdder();
+    private final ReplicationPipeline replication;
+    private final GameJournal journal;
+    private final UpdatePublisher publisher;
+    private NioGameServer nioServer;
     private final Registry registry;
     private final ITracker tracker;
+    private final RegionMap regionMap;
+    private final int region;
+    // primaries of the other regions, looked up on the first handoff into them
+    private final IGameServer[] regionServers;
+    private final Metrics metrics;
 
     public GameServer(Game game) {
-        super(game);
-        this.registry = game.getRegistry();
-        this.tracker = game.getTracker();
+        this(game, game.getRegistry(), game.getTracker(), EngineMode.fromSystemProperties(), game.getServedRegion());
+    }
+
+    public GameServer(GameMeta meta, Registry registry, ITracker tracker, EngineMode engineMode) {
+        this(meta, registry, tracker, engineMode, 0);
+    }
 
-        List<Position> allPositions = Position.generateAllPositions(this.getGridSize());
-        Set<String> keys = allPositions.stream().map(Position::getPositionKey).collect(Collectors.toSet());
-        this.positionLock = new KeyBasedLock(keys);
+    public GameServer(GameMeta meta, Registry registry, ITracker tracker, EngineMode engineMode, int region) {
+        super(meta);
+        this.registry = registry;
+        this.tracker = tracker;
+        this.regionMap = RegionMap.of(meta);
+        this.region = region;
+        this.regionServers = new IGameServer[this.regionMap.getRegionCount()];
+        this.positionLock = new CellLock(this.getGridSize());
+        this.engineMode = engineMode;
+        this.commandLoop = engineMode == EngineMode.LOCKING ? null : new CommandLoop("game-command-loop");
+        if (engineMode == EngineMode.TICK) {
+            long tickMillis = Long.getLong(Constants.TICK_MILLIS_PROPERTY, Constants.DEFAULT_TICK_MILLIS);
+            this.commandLoop.scheduleAtFixedRate(this::runTick, tickMillis);
+        }
+        this.replication = ReplicationPipeline.fromSystemProperties(this.registry, RegionMap.backupStubName(region));
+        this.journal = GameJournal.fromSystemProperties(region);
+        this.publisher = new UpdatePublisher(this::exportGameDataSince, Constants.PUBLISHER_SENDERS);
+        this.metrics = new Metrics("GameServer", region);
+        this.metrics.gauge("players", () -> this.gameState == null ? 0 : this.gameState.getPlayerMap().size());
+        this.metrics.gauge("version", () -> this.gameState == null ? -1 : this.gameState.getVersion());
+        // -1 while there is no backup to replicate to
+        this.metrics.gauge("replicationLag", () -> {
+            long replicated = this.replication.getReplicatedVersion();
+            return this.gameState == null || replicated < 0 ? -1 : this.gameState.getVersion() - replicated;
+        });
+        // fewer batches than rounds when moves share a batch
+        this.metrics.gauge("replicationRounds", this::getReplicationRounds);
+        this.metrics.gauge("replicationBatches", this.replication::getShippedBatches);
     }
 
     public void initialize() {
-        this.lookupBackupServer();
+        this.replication.lookupBackupServer();
 
         try {
             this.initializeGameState();
             this.syncServerInfo();
-            this.tryBackupGameData(this.gameState.exportGameData());
+            this.journal.start(this.gameState);
+            this.replication.start(this.gameState);
+            this.tryReplicate();
 
-            IGameServer stub = (IGameServer) UnicastRemoteObject.exportObject(this, Constants.PRIMARY_SERVER_PORT);
-            this.registry.rebind(Constants.PRIMARY_GAME_SERVER_STUB_NAME, stub);
+            this.exportAndBind();
             logger.info("Primary server ready!");
         } catch (Exception e) {
-            logger.error("Server exception: " + e);
+            logger.error("Server exception: {}", e);
             e.printStackTrace();
         }
     }
 
+    private void exportAndBind() throws Exception {
+        // several primaries of a sharded grid may share a host, so they take any free port
+        IGameServer stub = (IGameServer) UnicastRemoteObject.exportObject(this,
+                this.regionMap.isSharded() ? 0 : Constants.PRIMARY_SERVER_PORT);
+        this.startNioServer();
+        this.registry.rebind(RegionMap.primaryStubName(this.region), stub);
+        this.metrics.register();
+        // players learn about the new primary from the tracker instead of polling the registry
+        this.tracker.registerGameServer(this.region, stub);
+    }
+
+    private void startNioServer() {
+        if (TransportMode.fromSystemProperties() != TransportMode.NIO) {
+            return;
+        }
+        if (this.regionMap.isSharded()) {
+            logger.warn("NIO transport is not available for a sharded grid, serving RMI only!");
+            return;
+        }
+        try {
+            NioGameServer server = NioGameServer.fromSystemProperties(this);
+            server.start();
+            this.nioServer = server;
+        } catch (Exception e) {
+            logger.error("NIO game server failed to start, serving RMI only! error={}", e.getMessage());
+        }
+    }
+
+    @Override
+    public InetSocketAddress getNioAddress() throws RemoteException {
+        return this.nioServer == null ? null : this.nioServer.getAddress();
+    }
+
+    /**
+     * Creates a fresh game state without registering the server anywhere, for in-process benchmarks.
+     */
+    public void initializeLocal() {
+        this.initializeGameState();
+        this.journal.start(this.gameState);
+        this.replication.start(this.gameState);
+    }
+
+    public EngineMode getEngineMode() {
+        return this.engineMode;
+    }
+
+    public int getRegion() {
+        return this.region;
+    }
+
+    public GameJournal getJournal() {
+        return this.journal;
+    }
+
+    public Metrics getMetrics() {
+        return this.metrics;
+    }
+
     private void initializeGameState() {
-        this.gameState = GameState.newGameState(this.getGridSize(), this.getTreasureSize());
+        if (this.regionMap.isSharded()) {
+            this.gameState = GameState.newRegionGameState(this.getGridSize(),
+                    this.regionMap.getTreasureSize(this.region, this.getTreasureSize()),
+                    this.regionMap.getFromX(this.region), this.regionMap.getToX(this.region));
+        } else {
+            this.gameState = GameState.newGameState(this.getGridSize(), this.getTreasureSize());
+        }
+    }
+
+    private <T> T execute(Supplier<T> command) {
+        return this.commandLoop == null ? command.get() : this.commandLoop.call(command);
+    }
+
+    private <T> CompletableFuture<T> executeAsync(Supplier<T> command) {
+        if (this.commandLoop != null) {
+            return this.commandLoop.submit(command);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            result.complete(command.get());
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
     }
 
     public void respawn() {
-        this.lookupBackupServer();
+        long start = System.currentTimeMillis();
+        this.replication.lookupBackupServer();
 
         try {
             GameStateData data = this.getBackupGameData();
-            logger.info("Backup data found: " + (data == null ? "null" : data.toString()));
+            logger.info("Backup data found: {}", data);
             this.copyGameState(data);
-            this.syncGamePlayers();
-            this.syncServerInfo();
-            this.tryBackupGameData(this.gameState.exportGameData());
-
-            IGameServer stub = (IGameServer) UnicastRemoteObject.exportObject(this, Constants.PRIMARY_SERVER_PORT);
-            this.registry.rebind(Constants.PRIMARY_GAME_SERVER_STUB_NAME, stub);
-            logger.info("Primary Server respawned!");
+            this.takeOver();
+            logger.info("Primary Server respawned in {}ms!", System.currentTimeMillis() - start);
         } catch (Exception e) {
-            logger.error("Server exception: " + e);
+            logger.error("Server exception: {}", e);
             e.printStackTrace();
         }
     }
 
-    private void lookupBackupServer() {
-        if (this.backupServer != null) {
-            return;
+    /**
+     * Starts serving the replica a hot standby backup kept up to date, its indexes are already built.
+     */
+    public void promote(GameState replica) {
+        long start = System.currentTimeMillis();
+        try {
+            this.gameState = replica;
+            this.takeOver();
+            logger.info("Backup server promoted to primary in {}ms!", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Server exception: {}", e);
+            e.printStackTrace();
         }
+    }
+
+    /**
+     * Makes the tracker calls of a takeover once while standing by, so the first ones do not pay for
+     * connection setup and class loading during a failover.
+     */
+    public void warmUp() {
         try {
-            this.backupServer = (IBackupServer) this.registry.lookup(Constants.BACKUP_GAME_SERVER_STUB_NAME);
-            logger.info("Backup server found!");
+            this.tracker.getPlayerSet();
+            this.tracker.getRegionServerInfo(this.region);
         } catch (Exception e) {
-            logger.warn("Backup server not found!");
+            logger.warn("Warming up standby server failed! error={}", e.getMessage());
         }
     }
 
+    private void takeOver() throws Exception {
+        // clients may hold versions the dead primary handed out but never replicated
+        this.gameState.startNewHistory();
+        this.syncGamePlayers();
+        this.syncServerInfo();
+        this.journal.start(this.gameState);
+        this.replication.start(this.gameState);
+        this.tryReplicate();
+
+        this.exportAndBind();
+    }
+
     private void copyGameState(GameStateData data) {
         if (data == null) {
-            this.initializeGameState();
+            // the backup died with the primary, the local journal is the last copy of the game
+            GameState recovered = this.journal.recover(this.getGridSize(), this.regionMap.getFromX(this.region),
+                    this.regionMap.getToX(this.region));
+            if (recovered != null) {
+                this.gameState = recovered;
+            } else {
+                this.initializeGameState();
+            }
         } else {
-            this.gameState = new GameState(data);
+            this.gameState = new GameState(data, this.getGridSize(), this.regionMap.getFromX(this.region),
+                    this.regionMap.getToX(this.region));
         }
     }
 
     private void syncServerInfo() {
         try {
-            ServerInfo serverInfo = this.tracker.getServerInfo();
+            ServerInfo serverInfo = this.tracker.getRegionServerInfo(this.region);
             this.gameState.setPrimaryServer(serverInfo.getPrimaryServer());
             this.gameState.setBackupServer(serverInfo.getBackupServer());
         } catch (Exception e) {
-            logger.error("Sync server info failed! " + e.getMessage());
+            logger.error("Sync server info failed! {}", e.getMessage());
             e.printStackTrace();
         }
     }
@@ -111,9 +275,14 @@ public class GameServer extends GameMeta implements IGameServer {
             // to be removed players
             currentPlayerIds.removeAll(commonPlayers);
 
-            logger.info("To be add players: " + accuratePlayerIds);
-            logger.info("To be remove players: " + currentPlayerIds);
-            this.gameState.initializeNewPlayers(accuratePlayerIds, this.getGridSize());
+            if (this.regionMap.isSharded()) {
+                // players missing here may stand in another region, only departed players are dropped
+                accuratePlayerIds.clear();
+            }
+
+            logger.info("To be add players: {}", accuratePlayerIds);
+            logger.info("To be remove players: {}", currentPlayerIds);
+            this.gameState.initializeNewPlayers(accuratePlayerIds);
             this.gameState.removePlayers(currentPlayerIds);
         } catch (Exception e) {
             logger.warn("Sync player failed!");
@@ -122,8 +291,9 @@ public class GameServer extends GameMeta implements IGameServer {
 
     private GameStateData getBackupGameData() {
         try {
-            if (this.backupServer != null) {
-                return this.backupServer.getGameData();
+            IBackupServer backupServer = this.replication.lookupBackupServer();
+            if (backupServer != null) {
+                return backupServer.getGameData();
             }
         } catch (Exception e) {
             logger.warn("Backup server not found when getting backup data!");
@@ -131,21 +301,37 @@ public class GameServer extends GameMeta implements IGameServer {
         return null;
     }
 
-    private void tryBackupGameData(GameStateData gameStateData) {
-        try {
-            this.lookupBackupServer();
-            if (this.backupServer != null) {
-                this.backupServer.updateGameData(gameStateData);
-            }
-        } catch (Exception e) {
-            logger.warn("Backup game data failed! error=" + e.getMessage());
-            // will lookup backup server next time
-            this.backupServer = null;
-        }
+    private void tryReplicate() {
+        CommandLoop.join(this.commitAsync());
+    }
+
+    /**
+     * @return completes once the changes so far are on the local disk and replicated as far as the
+     *      replication mode asks, on the journal or replication thread, with no thread waiting meanwhile
+     */
+    private CompletableFuture<Void> commitAsync() {
+        this.replicationRounds.increment();
+        // a change is on the local disk before it is replicated or pushed
+        return this.journal.syncAsync()
+                .thenCompose(ignored -> this.replication.replicateAsync())
+                .thenRun(this.publisher::publish);
+    }
+
+    public long getReplicationRounds() {
+        return this.replicationRounds.sum();
+    }
+
+    public long getReplicatedVersion() {
+        return this.replication.getReplicatedVersion();
+    }
+
+    private boolean tryLockPosition(Position position) {
+        // the single writer never races with itself, so cells need no claims
+        return this.commandLoop != null || this.positionLock.tryLock(position);
     }
 
     private boolean tryAccessPosition(Position position) {
-        if (this.positionLock.tryLock(position.getPositionKey())) {
+        if (this.tryLockPosition(position)) {
             if (this.gameState.isPositionOccupied(position)) {
                 // if position is occupied, just unlock it and return false
                 unlockPosition(position);
@@ -160,48 +346,264 @@ public class GameServer extends GameMeta implements IGameServer {
     }
 
     private void unlockPosition(Position position) {
-        if (position != null) {
-            this.positionLock.unlock(position.getPositionKey());
+        if (position != null && this.commandLoop == null) {
+            this.positionLock.unlock(position);
         }
     }
 
     @Override
     public GameStateData getGameData() throws RemoteException {
-        return this.gameState.exportGameData();
+        return this.metrics.time("getGameData", () -> this.gameState.exportGameData());
+    }
+
+    @Override
+    public GameStateDelta getGameDataSince(long version) throws RemoteException {
+        return this.metrics.time("getGameDataSince", () -> this.exportGameDataSince(version));
+    }
+
+    @Override
+    public GameStateDelta movePlayerSince(String playerId, Direction direction, long version) {
+        return this.metrics.time("movePlayerSince", () -> {
+            this.movePlayerAndReplicate(playerId, direction);
+            return this.exportGameDataSince(version);
+        });
+    }
+
+    private GameStateDelta exportGameDataSince(long version) {
+        return GameStateDelta.since(this.gameState, version);
     }
 
     @Override
     public GameStateData addPlayer(String playerId) {
-        Position position = findNewAvailablePosition();
+        return this.metrics.time("addPlayer", () -> {
+            CommandLoop.join(this.addPlayerAndReplicateAsync(playerId));
+            return this.gameState.exportGameData();
+        });
+    }
+
+    /**
+     * Adds the player like addPlayer without a thread waiting for durability and replication meanwhile.
+     * @param executor exports the game data once the player is replicated
+     */
+    public CompletableFuture<GameStateData> addPlayerAsync(String playerId, Executor executor) {
+        return this.metrics.timeAsync("addPlayer", () -> this.addPlayerAndReplicateAsync(playerId)
+                .thenApplyAsync(ignored -> this.gameState.exportGameData(), executor));
+    }
+
+    private CompletableFuture<Void> addPlayerAndReplicateAsync(String playerId) {
+        return this.executeAsync(() -> {
+            Position position = findNewAvailablePosition();
+            if (position == null) {
+                throw new IllegalStateException("No available position left for player " + playerId);
+            }
+            try {
+                this.gameState.addPlayer(playerId, position);
+            } finally {
+                unlockPosition(position);
+            }
+            return position;
+        }).thenCompose(position -> {
+            logger.info("Player added successfully, player={}", playerId);
+            return this.commitAsync();
+        });
+    }
+
+    @Override
+    public GameStateData movePlayer(String playerId, Direction direction) {
+        return this.metrics.time("movePlayer", () -> {
+            this.movePlayerAndReplicate(playerId, direction);
+            return this.gameState.exportGameData();
+        });
+    }
+
+    /**
+     * Moves the player like movePlayer without a thread waiting for durability and replication meanwhile.
+     * @param executor exports the game data once the move is replicated
+     */
+    public CompletableFuture<GameStateData> movePlayerAsync(String playerId, Direction direction, Executor executor) {
+        return this.metrics.timeAsync("movePlayer", () -> this.movePlayerAndReplicateAsync(playerId, direction)
+                .thenApplyAsync(ignored -> this.gameState.exportGameData(), executor));
+    }
+
+    /**
+     * Moves the player like movePlayerSince without a thread waiting for durability and replication
+     * meanwhile.
+     * @param executor exports the delta once the move is replicated
+     */
+    public CompletableFuture<GameStateDelta> movePlayerSinceAsync(String playerId, Direction direction, long version,
+                                                                  Executor executor) {
+        return this.metrics.timeAsync("movePlayerSince", () -> this.movePlayerAndReplicateAsync(playerId, direction)
+                .thenApplyAsync(ignored -> this.exportGameDataSince(version), executor));
+    }
+
+    private void movePlayerAndReplicate(String playerId, Direction direction) {
+        CommandLoop.join(this.movePlayerAndReplicateAsync(playerId, direction));
+    }
+
+    private CompletableFuture<Void> movePlayerAndReplicateAsync(String playerId, Direction direction) {
+        // handoffs call the other region on the request thread, the NIO transport does not serve sharded grids
+        if (this.regionMap.isSharded() && this.tryHandOff(playerId, direction)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (this.engineMode == EngineMode.TICK) {
+            // the tick that applies the move also replicates it
+            PendingMove move = new PendingMove(playerId, direction);
+            this.pendingMoves.add(move);
+            return move.done;
+        }
+        // the writer only applies the move, durability and replication complete the future later
+        return this.executeAsync(() -> doMovePlayer(playerId, direction))
+                .thenCompose(moved -> moved ? this.commitAsync() : CompletableFuture.completedFuture(null));
+    }
+
+    private void runTick() {
+        if (this.pendingMoves.isEmpty()) {
+            return;
+        }
+        List<PendingMove> moves = new ArrayList<>();
+        for (PendingMove move = this.pendingMoves.poll(); move != null; move = this.pendingMoves.poll()) {
+            moves.add(move);
+        }
+        CompletableFuture<Void> committed = CompletableFuture.completedFuture(null);
         try {
-            this.gameState.addPlayer(playerId, position);
-        } finally {
-            unlockPosition(position);
+            // contested cells go to the smallest player id, moves of one player keep their arrival order
+            moves.sort(Comparator.comparing(move -> move.playerId));
+            List<PlayerInfo> players = new ArrayList<>(moves.size());
+            List<Direction> directions = new ArrayList<>(moves.size());
+            for (PendingMove move : moves) {
+                PlayerInfo player = this.gameState.getPlayerMap().get(move.playerId);
+                if (player == null) {
+                    logger.warn("player not found, playerId={}", move.playerId);
+                    continue;
+                }
+                players.add(player);
+                directions.add(move.direction);
+            }
+            int applied = this.gameState.applyMoves(players, directions);
+            // moves that lost their cell to another move of the tick or to a standing player
+            this.metrics.add("snatchedMoves", players.size() - applied);
+            if (applied > 0) {
+                // the next tick runs while this one is made durable and replicated
+                committed = this.commitAsync();
+            }
+        } catch (Exception e) {
+            logger.error("error happens when applying tick, moves={}, error={}", moves.size(), e.getMessage());
+        }
+        committed.whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.error("error happens when replicating tick, moves={}, error={}", moves.size(),
+                        error.getMessage());
+            }
+            for (PendingMove move : moves) {
+                move.done.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Moves the player into the neighbouring region if the move crosses the region border. The new owner
+     * takes the player first, so a refused handoff leaves the player where it was. This runs on the
+     * request thread: a writer thread waiting for another region's writer could deadlock with it.
+     *
+     * @return true if the move crosses the border, whether or not the handoff succeeded
+     */
+    private boolean tryHandOff(String playerId, Direction direction) {
+        PlayerInfo player = this.gameState.getPlayerMap().get(playerId);
+        if (player == null) {
+            return false;
+        }
+        Position position = player.getPosition().movePosition(direction);
+        if (!position.isValid(this.getGridSize()) || this.gameState.isOwned(position)) {
+            return false;
+        }
+        int target = this.regionMap.regionOf(position);
+        try {
+            IGameServer owner = this.lookupRegionServer(target);
+            if (owner == null || !owner.acceptPlayer(playerId, position, player.getPoints())) {
+                logger.info("player handoff refused, playerId={}, region={}", playerId, target);
+                return true;
+            }
+        } catch (Exception e) {
+            this.regionServers[target] = null;
+            logger.warn("player handoff failed, playerId={}, region={}, error={}", playerId, target, e.getMessage());
+            return true;
+        }
+        this.execute(() -> {
+            this.gameState.removePlayer(playerId);
+            return null;
+        });
+        this.tryReplicate();
+        return true;
+    }
+
+    private IGameServer lookupRegionServer(int region) {
+        IGameServer server = this.regionServers[region];
+        if (server != null) {
+            return server;
+        }
+        try {
+            server = (IGameServer) this.registry.lookup(RegionMap.primaryStubName(region));
+            this.regionServers[region] = server;
+        } catch (Exception e) {
+            logger.warn("Primary server of region {} not found!", region);
         }
-        logger.info("Player added successfully, player=" + playerId);
-        GameStateData gameData = this.gameState.exportGameData();
-        this.tryBackupGameData(gameData);
-        return gameData;
+        return server;
     }
 
     @Override
-    public GameStateData movePlayer(String playerId, Direction direction) {
+    public boolean acceptPlayer(String playerId, Position position, int points) {
+        Position canonical = Position.canonical(this.getGridSize(), position);
+        boolean accepted = this.execute(() -> {
+            if (!this.gameState.isOwned(canonical) || !tryMove(canonical)) {
+                return false;
+            }
+            Position newTreasurePosition = null;
+            try {
+                PlayerInfo player = this.gameState.addPlayer(playerId, canonical, points);
+                if (tryCollectTreasure(canonical)) {
+                    newTreasurePosition = findNewAvailablePosition();
+                    if (newTreasurePosition != null) {
+                        this.gameState.collectTreasure(player, newTreasurePosition);
+                    }
+                }
+            } finally {
+                unlockPosition(canonical);
+                unlockPosition(newTreasurePosition);
+            }
+            return true;
+        });
+        if (accepted) {
+            logger.info("Player handed over, player={}, position={}", playerId, canonical);
+            this.tryReplicate();
+        }
+        return accepted;
+    }
+
+    private boolean doMovePlayer(String playerId, Direction direction) {
         PlayerInfo player = this.gameState.getPlayerMap().get(playerId);
         if (player == null) {
-            logger.warn("player not found, playerId=" + playerId);
-            return this.gameState.exportGameData();
+            logger.warn("player not found, playerId={}", playerId);
+            this.metrics.increment("rejectedMoves");
+            return false;
         }
         Position newPosition = player.getPosition().movePosition(direction);
         if (!newPosition.isValid(this.getGridSize())) {
-            logger.warn("player new position out of bound, playerId=" + playerId +
-                    ", new position " + newPosition);
-            return this.gameState.exportGameData();
+            this.metrics.increment("rejectedMoves");
+            logger.debug("player new position out of bound, playerId={}, new position {}", playerId, newPosition);
+            return false;
+        }
+        if (!this.gameState.isOwned(newPosition)) {
+            // border crossings are handed off before the move reaches the engine
+            logger.debug("player move failed, position belongs to another region");
+            this.metrics.increment("rejectedMoves");
+            return false;
         }
 
         boolean success = tryMove(newPosition);
         if (!success) {
-            logger.info("player move failed, position is snatched");
-            return this.gameState.exportGameData();
+            logger.debug("player move failed, position is snatched");
+            this.metrics.increment("snatchedMoves");
+            return false;
         }
 
         boolean treasureFound = tryCollectTreasure(newPosition);
@@ -212,20 +614,20 @@ public class GameServer extends GameMeta implements IGameServer {
         try {
             this.gameState.movePlayerAndFollowUp(player, newPosition, newTreasurePosition);
         } catch (Exception e) {
-            logger.error("error happens when moving player, adding points or adding new treasure, error=" + e.getMessage());
+            logger.error("error happens when moving player, adding points or adding new treasure, error={}",
+                    e.getMessage());
         } finally {
             unlockPosition(newPosition);
             unlockPosition(newTreasurePosition);
         }
-
-        GameStateData gameData = this.gameState.exportGameData();
-        this.tryBackupGameData(gameData);
-        return gameData;
+        return true;
     }
 
     @Override
     public void changeBackupServer(String backupServer) throws RemoteException {
         this.gameState.setBackupServer(backupServer);
+        this.replication.backupChanged();
+        this.publisher.publish();
     }
 
     private boolean tryMove(Position newPosition) {
@@ -235,30 +637,75 @@ public class GameServer extends GameMeta implements IGameServer {
                 return false;
             }
         } catch (Exception e) {
-            logger.warn("player move failed, error=" + e.getMessage());
+            logger.warn("player move failed, error={}", e.getMessage());
             return false;
         }
         return true;
     }
 
     private boolean tryCollectTreasure(Position playerPosition) {
-        Set<Position> treasurePositions = this.gameState.getTreasurePositions();
-        return treasurePositions.contains(playerPosition);
+        return this.gameState.isTreasurePosition(playerPosition);
     }
 
     private Position findNewAvailablePosition() {
-        Position position = this.gameState.getRandomAvailablePosition(this.getGridSize());
-        boolean success = tryAccessPosition(position);
-        if (success) {
-            return position;
-        } else {
-            return findNewAvailablePosition();
+        while (true) {
+            Position position = this.gameState.getRandomAvailablePosition();
+            if (position == null) {
+                return null;
+            }
+            if (this.tryLockPosition(position)) {
+                // a spawn must not land on a player or a treasure
+                if (this.gameState.isPositionAvailable(position)) {
+                    return position;
+                }
+                unlockPosition(position);
+            }
         }
     }
 
     @Override
     public void removePlayer(String playerId) throws RemoteException {
-        this.gameState.removePlayer(playerId);
-        this.tryBackupGameData(this.gameState.exportGameData());
+        this.metrics.time("removePlayer", () -> {
+            CommandLoop.join(this.removePlayerAndReplicateAsync(playerId));
+        });
+    }
+
+    /**
+     * Removes the player like removePlayer without a thread waiting for durability and replication
+     * meanwhile.
+     */
+    public CompletableFuture<Void> removePlayerAsync(String playerId) {
+        return this.metrics.timeAsync("removePlayer", () -> this.removePlayerAndReplicateAsync(playerId));
+    }
+
+    private CompletableFuture<Void> removePlayerAndReplicateAsync(String playerId) {
+        return this.executeAsync(() -> {
+            this.gameState.removePlayer(playerId);
+            return null;
+        }).thenCompose(ignored -> {
+            this.publisher.unsubscribe(playerId);
+            return this.commitAsync();
+        });
+    }
+
+    @Override
+    public void subscribe(String playerId, IGameSubscriber subscriber, long version) throws RemoteException {
+        this.publisher.subscribe(playerId, subscriber, version);
+    }
+
+    @Override
+    public void unsubscribe(String playerId) throws RemoteException {
+        this.publisher.unsubscribe(playerId);
+    }
+
+    private static class PendingMove {
+        private final String playerId;
+        private final Direction direction;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingMove(String playerId, Direction direction) {
+            this.playerId = playerId;
+            this.direction = direction;
+        }
     }
 }
@@ -1,31 +1,140 @@
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
 
 public class GameState extends ServerInfo {
 
     private final ConcurrentHashMap<String, PlayerInfo> playerMap = new ConcurrentHashMap<>();
     private final Set<Position> treasurePositions;
+    private final int gridSize;
+    // columns owned by this state, players and treasures are only placed there
+    private final int fromX;
+    private final int toX;
+    // number of players standing on each cell, indexed by x * gridSize + y
+    private final int[] occupancy;
+    private final boolean[] treasureCells;
+    // cells without player or treasure; freeSlots maps a cell back to its index in freeCells, -1 if taken
+    private final int[] freeCells;
+    private final int[] freeSlots;
+    private int freeCount;
+    private volatile ChangeLog changeLog;
+    // last exported data, reused while the version is unchanged
+    private volatile GameStateData snapshot;
 
-    private GameState(List<Position> treasurePositions) {
+    private GameState(int gridSize, List<Position> treasurePositions, int fromX, int toX) {
         super();
+        this.gridSize = gridSize;
+        this.fromX = fromX;
+        this.toX = toX;
+        this.occupancy = new int[gridSize * gridSize];
+        this.treasureCells = new boolean[gridSize * gridSize];
+        this.freeCells = new int[gridSize * gridSize];
+        this.freeSlots = new int[gridSize * gridSize];
         this.treasurePositions = ConcurrentHashMap.newKeySet(treasurePositions.size());
         this.treasurePositions.addAll(treasurePositions);
+        this.changeLog = new ChangeLog(Constants.CHANGE_LOG_CAPACITY, 0);
+        this.initializeCells();
     }
 
-    public GameState(GameStateData data) {
+    public GameState(GameStateData data, int gridSize) {
+        this(data, gridSize, 0, gridSize);
+    }
+
+    public GameState(GameStateData data, int gridSize, int fromX, int toX) {
         super(data);
-        this.playerMap.putAll(data.getPlayerMap());
+        this.gridSize = gridSize;
+        this.fromX = fromX;
+        this.toX = toX;
+        this.occupancy = new int[gridSize * gridSize];
+        this.treasureCells = new boolean[gridSize * gridSize];
+        this.freeCells = new int[gridSize * gridSize];
+        this.freeSlots = new int[gridSize * gridSize];
+        for (PlayerInfo player : data.getPlayerMap().values()) {
+            PlayerInfo copy = new PlayerInfo(player);
+            copy.setPosition(Position.canonical(gridSize, player.getPosition()));
+            this.playerMap.put(copy.getId(), copy);
+        }
         this.treasurePositions = ConcurrentHashMap.newKeySet(data.getTreasurePositions().size());
-        this.treasurePositions.addAll(data.getTreasurePositions());
+        for (Position position : data.getTreasurePositions()) {
+            this.treasurePositions.add(Position.canonical(gridSize, position));
+        }
+        this.changeLog = new ChangeLog(Constants.CHANGE_LOG_CAPACITY, data.getVersion());
+        this.initializeCells();
     }
 
     public static GameState newGameState(int gridSize, int treasureSize) {
         List<Position> treasurePositions = Position.randomPositions(gridSize, treasureSize);
-        return new GameState(treasurePositions);
+        return new GameState(gridSize, treasurePositions, 0, gridSize);
+    }
+
+    /**
+     * @return a game state owning only the columns from fromX up to but excluding toX
+     */
+    public static GameState newRegionGameState(int gridSize, int treasureSize, int fromX, int toX) {
+        GameState state = new GameState(gridSize, new ArrayList<>(), fromX, toX);
+        for (Position position : state.getRandomAvailablePositions(treasureSize)) {
+            state.setTreasure(position, true);
+        }
+        return state;
+    }
+
+    private void initializeCells() {
+        for (PlayerInfo player : this.playerMap.values()) {
+            Position position = player.getPosition();
+            if (position != null && position.isValid(this.gridSize)) {
+                this.occupancy[position.getCellIndex(this.gridSize)]++;
+            }
+        }
+        for (Position position : this.treasurePositions) {
+            if (position.isValid(this.gridSize)) {
+                this.treasureCells[position.getCellIndex(this.gridSize)] = true;
+            }
+        }
+        this.freeCount = 0;
+        for (int cell = 0; cell < this.freeSlots.length; cell++) {
+            if (this.isFreeCell(cell)) {
+                this.freeCells[this.freeCount] = cell;
+                this.freeSlots[cell] = this.freeCount;
+                this.freeCount++;
+            } else {
+                this.freeSlots[cell] = -1;
+            }
+        }
+    }
+
+    public int getGridSize() {
+        return this.gridSize;
+    }
+
+    public boolean isOwned(Position position) {
+        return position.isValid(this.gridSize) && position.getX() >= this.fromX && position.getX() < this.toX;
+    }
+
+    private boolean isFreeCell(int cell) {
+        int x = cell / this.gridSize;
+        return this.occupancy[cell] == 0 && !this.treasureCells[cell] && x >= this.fromX && x < this.toX;
+    }
+
+    public long getVersion() {
+        return this.changeLog.getLastSequence();
+    }
+
+    /**
+     * Renumbers the following changes far beyond any version an earlier primary could have handed out,
+     * so that clients and backups holding versions of another history fall back to a snapshot.
+     */
+    public synchronized void startNewHistory() {
+        long base = Math.max(this.getVersion() + Constants.CHANGE_LOG_CAPACITY, System.currentTimeMillis() << 16);
+        this.changeLog = new ChangeLog(Constants.CHANGE_LOG_CAPACITY, base);
+    }
+
+    /**
+     * @return changes applied after the given version, null if the log no longer covers that version
+     */
+    public List<StateChange> getChangesSince(long version) {
+        return this.changeLog.since(version);
     }
 
     public ConcurrentHashMap<String, PlayerInfo> getPlayerMap() {
@@ -37,78 +146,323 @@ public class GameState extends ServerInfo {
     }
 
     public boolean isPositionOccupied(Position position) {
-        for (PlayerInfo player : this.playerMap.values()) {
-            if (player.getPosition().equals(position)) {
-                return true;
-            }
+        return position.isValid(this.gridSize) && this.occupancy[position.getCellIndex(this.gridSize)] > 0;
+    }
+
+    public boolean isPositionAvailable(Position position) {
+        return position.isValid(this.gridSize) && this.freeSlots[position.getCellIndex(this.gridSize)] >= 0;
+    }
+
+    public boolean isTreasurePosition(Position position) {
+        return position.isValid(this.gridSize) && this.treasureCells[position.getCellIndex(this.gridSize)];
+    }
+
+    private void occupy(Position position) {
+        if (position != null && position.isValid(this.gridSize)) {
+            int cell = position.getCellIndex(this.gridSize);
+            this.occupancy[cell]++;
+            this.refreshFreeCell(cell);
+        }
+    }
+
+    private void vacate(Position position) {
+        if (position != null && position.isValid(this.gridSize)) {
+            int cell = position.getCellIndex(this.gridSize);
+            this.occupancy[cell]--;
+            this.refreshFreeCell(cell);
         }
-        return false;
+    }
+
+    private void setTreasure(Position position, boolean treasure) {
+        if (treasure) {
+            this.treasurePositions.add(position);
+        } else {
+            this.treasurePositions.remove(position);
+        }
+        if (position.isValid(this.gridSize)) {
+            int cell = position.getCellIndex(this.gridSize);
+            this.treasureCells[cell] = treasure;
+            this.refreshFreeCell(cell);
+        }
+    }
+
+    private void refreshFreeCell(int cell) {
+        boolean free = this.isFreeCell(cell);
+        int slot = this.freeSlots[cell];
+        if (free && slot < 0) {
+            this.freeCells[this.freeCount] = cell;
+            this.freeSlots[cell] = this.freeCount;
+            this.freeCount++;
+        } else if (!free && slot >= 0) {
+            // swap the last free cell into the vacated slot
+            this.freeCount--;
+            int last = this.freeCells[this.freeCount];
+            this.freeCells[slot] = last;
+            this.freeSlots[last] = slot;
+            this.freeSlots[cell] = -1;
+        }
+    }
+
+    private void swapFreeSlots(int i, int j) {
+        int cellI = this.freeCells[i];
+        int cellJ = this.freeCells[j];
+        this.freeCells[i] = cellJ;
+        this.freeSlots[cellJ] = i;
+        this.freeCells[j] = cellI;
+        this.freeSlots[cellI] = j;
     }
 
     public Set<Position> getTreasurePositions() {
         return this.treasurePositions;
     }
 
-    public Position getRandomAvailablePosition(int gridSize) {
-         List<Position> allPositions = Position.generateAllPositions(gridSize);
-         List<Position> playerPositions = this.playerMap.values().stream().map(PlayerInfo::getPosition)
-                 .collect(Collectors.toList());
-         allPositions.removeAll(playerPositions);
-         allPositions.removeAll(this.treasurePositions);
-         // randomly choose one position
-         int index = ThreadLocalRandom.current().nextInt(0, allPositions.size());
-         return allPositions.get(index);
+    public int getAvailablePositionCount() {
+        return this.freeCount;
     }
 
-    public List<Position> getRandomAvailablePositions(int gridSize, int numPositions) {
-        List<Position> allPositions = Position.generateAllPositions(gridSize);
-        List<Position> playerPositions = this.playerMap.values().stream().map(PlayerInfo::getPosition)
-                .collect(Collectors.toList());
-        allPositions.removeAll(playerPositions);
-        allPositions.removeAll(this.treasurePositions);
-        Collections.shuffle(allPositions);
-        // randomly choose n position
-        return allPositions.subList(0, numPositions);
+    /**
+     * @return a uniformly chosen cell without player or treasure, null if the grid is full
+     */
+    public synchronized Position getRandomAvailablePosition() {
+        if (this.freeCount == 0) {
+            return null;
+        }
+        int cell = this.freeCells[ThreadLocalRandom.current().nextInt(this.freeCount)];
+        return Position.ofCell(this.gridSize, cell);
+    }
+
+    public synchronized List<Position> getRandomAvailablePositions(int numPositions) {
+        int size = Math.min(numPositions, this.freeCount);
+        List<Position> positions = new ArrayList<>(size);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // partial Fisher-Yates over the free cells, the set of free cells itself is unchanged
+        for (int i = 0; i < size; i++) {
+            this.swapFreeSlots(i, random.nextInt(i, this.freeCount));
+            int cell = this.freeCells[i];
+            positions.add(Position.ofCell(this.gridSize, cell));
+        }
+        return positions;
     }
 
     public synchronized void addPlayer(String playerId, Position initialPosition) {
+        this.addPlayer(playerId, initialPosition, 0);
+    }
+
+    public synchronized PlayerInfo addPlayer(String playerId, Position initialPosition, int points) {
         PlayerInfo info = new PlayerInfo(playerId, initialPosition);
-        this.playerMap.put(playerId, info);
+        info.setPoints(points);
+        PlayerInfo previous = this.playerMap.put(playerId, info);
+        if (previous != null) {
+            this.vacate(previous.getPosition());
+        }
+        this.occupy(initialPosition);
+        this.changeLog.append(StateChange.playerJoined(this.changeLog.nextSequence(), playerId, initialPosition,
+                points));
+        return info;
     }
 
-    public synchronized void initializeNewPlayers(Set<String> players, int gridSize) {
+    public synchronized void initializeNewPlayers(Set<String> players) {
         if (players.isEmpty()) {
             return;
         }
-        List<Position> playerPositions = this.getRandomAvailablePositions(gridSize, players.size());
+        List<Position> playerPositions = this.getRandomAvailablePositions(players.size());
         int i = 0;
         for (String playerId: players) {
+            if (i >= playerPositions.size()) {
+                break;
+            }
             Position pos = playerPositions.get(i);
-            this.playerMap.put(playerId, new PlayerInfo(playerId, pos));
+            PlayerInfo previous = this.playerMap.put(playerId, new PlayerInfo(playerId, pos));
+            if (previous != null) {
+                this.vacate(previous.getPosition());
+            }
+            this.occupy(pos);
+            this.changeLog.append(StateChange.playerJoined(this.changeLog.nextSequence(), playerId, pos, 0));
             i++;
         }
     }
 
     public synchronized void movePlayerAndFollowUp(PlayerInfo player, Position newPlayerPosition,
                                                    Position newTreasurePosition) {
+        this.vacate(player.getPosition());
         player.setPosition(newPlayerPosition);
+        this.occupy(newPlayerPosition);
+        this.changeLog.append(StateChange.playerMoved(this.changeLog.nextSequence(), player.getId(), newPlayerPosition));
         if (newTreasurePosition != null) {
-            player.incrementPoint();
-            this.treasurePositions.remove(newPlayerPosition);
-            this.treasurePositions.add(newTreasurePosition);
+            this.collectTreasure(player, newTreasurePosition);
         }
     }
 
+    /**
+     * Gives the player the treasure on its cell and respawns the treasure at the given position.
+     */
+    public synchronized void collectTreasure(PlayerInfo player, Position newTreasurePosition) {
+        Position position = player.getPosition();
+        player.incrementPoint();
+        this.setTreasure(position, false);
+        this.setTreasure(newTreasurePosition, true);
+        this.changeLog.append(StateChange.pointsChanged(this.changeLog.nextSequence(), player.getId(),
+                player.getPoints()));
+        this.changeLog.append(StateChange.treasureMoved(this.changeLog.nextSequence(), position,
+                newTreasurePosition));
+    }
+
+    /**
+     * Applies a batch of moves in list order, each from where the player stands by then. A move whose
+     * target is taken or not owned by this state is skipped. Treasures collected in the batch respawn together once
+     * all moves are applied.
+     *
+     * @return the number of moves applied
+     */
+    public synchronized int applyMoves(List<PlayerInfo> players, List<Direction> directions) {
+        List<Position> collected = new ArrayList<>();
+        int applied = 0;
+        for (int i = 0; i < players.size(); i++) {
+            PlayerInfo player = players.get(i);
+            if (this.playerMap.get(player.getId()) != player) {
+                // the player left or was handed to another region meanwhile
+                continue;
+            }
+            Position target = player.getPosition().movePosition(directions.get(i));
+            if (!this.isOwned(target) || this.isPositionOccupied(target)) {
+                continue;
+            }
+            this.vacate(player.getPosition());
+            player.setPosition(target);
+            this.occupy(target);
+            this.changeLog.append(StateChange.playerMoved(this.changeLog.nextSequence(), player.getId(), target));
+            if (this.isTreasurePosition(target)) {
+                player.incrementPoint();
+                this.setTreasure(target, false);
+                collected.add(target);
+                this.changeLog.append(StateChange.pointsChanged(this.changeLog.nextSequence(), player.getId(),
+                        player.getPoints()));
+            }
+            applied++;
+        }
+        List<Position> spawns = this.getRandomAvailablePositions(collected.size());
+        for (int i = 0; i < collected.size(); i++) {
+            if (i >= spawns.size()) {
+                // no free cell left, the treasure stays where it was collected
+                this.setTreasure(collected.get(i), true);
+                continue;
+            }
+            this.setTreasure(spawns.get(i), true);
+            this.changeLog.append(StateChange.treasureMoved(this.changeLog.nextSequence(), collected.get(i),
+                    spawns.get(i)));
+        }
+        return applied;
+    }
+
     public synchronized void removePlayer(String playerId) {
-        this.playerMap.remove(playerId);
+        PlayerInfo removed = this.playerMap.remove(playerId);
+        if (removed != null) {
+            this.vacate(removed.getPosition());
+            this.changeLog.append(StateChange.playerLeft(this.changeLog.nextSequence(), playerId));
+        }
         // TODO: unlock all user lock? check again, all lock should be release within same method same thread
     }
 
     public synchronized void removePlayers(Set<String> players) {
-        this.playerMap.keySet().removeAll(players);
+        for (String playerId : players) {
+            PlayerInfo removed = this.playerMap.remove(playerId);
+            if (removed != null) {
+                this.vacate(removed.getPosition());
+                this.changeLog.append(StateChange.playerLeft(this.changeLog.nextSequence(), playerId));
+            }
+        }
+    }
+
+    /**
+     * Replays changes of the primary in sequence order, keeping their sequence numbers, so that a backup
+     * holds a state with built indexes that is ready to serve. Changes already covered are skipped.
+     *
+     * @return false if the changes do not continue from the current version, nothing is applied then
+     */
+    public synchronized boolean applyChanges(List<StateChange> changes) {
+        for (StateChange change : changes) {
+            if (change.getSequence() <= this.getVersion()) {
+                continue;
+            }
+            if (change.getSequence() != this.getVersion() + 1) {
+                return false;
+            }
+            break;
+        }
+        for (StateChange change : changes) {
+            if (change.getSequence() == this.getVersion() + 1) {
+                this.applyChange(change);
+            }
+        }
+        return true;
     }
 
-    public synchronized GameStateData exportGameData() {
-        return new GameStateData(this);
+    private void applyChange(StateChange change) {
+        PlayerInfo player = change.getPlayerId() == null ? null : this.playerMap.get(change.getPlayerId());
+        Position position = change.getPosition() == null ? null : Position.canonical(this.gridSize, change.getPosition());
+        switch (change.getType()) {
+            case PLAYER_JOINED:
+                PlayerInfo joined = new PlayerInfo(change.getPlayerId(), position);
+                joined.setPoints(change.getPoints());
+                PlayerInfo previous = this.playerMap.put(joined.getId(), joined);
+                if (previous != null) {
+                    this.vacate(previous.getPosition());
+                }
+                this.occupy(position);
+                break;
+            case PLAYER_LEFT:
+                PlayerInfo removed = this.playerMap.remove(change.getPlayerId());
+                if (removed != null) {
+                    this.vacate(removed.getPosition());
+                }
+                break;
+            case PLAYER_MOVED:
+                if (player != null) {
+                    this.vacate(player.getPosition());
+                    player.setPosition(position);
+                    this.occupy(position);
+                }
+                break;
+            case POINTS_CHANGED:
+                if (player != null) {
+                    player.setPoints(change.getPoints());
+                }
+                break;
+            case TREASURE_MOVED:
+                this.setTreasure(Position.canonical(this.gridSize, change.getPreviousPosition()), false);
+                this.setTreasure(position, true);
+                break;
+        }
+        this.changeLog.append(change);
+    }
+
+    @Override
+    public void setPrimaryServer(String primaryServer) {
+        super.setPrimaryServer(primaryServer);
+        this.snapshot = null;
+    }
+
+    @Override
+    public void setBackupServer(String backupServer) {
+        super.setBackupServer(backupServer);
+        this.snapshot = null;
+    }
+
+    /**
+     * @return a snapshot shared by all callers until the next change, it must not be modified
+     */
+    public GameStateData exportGameData() {
+        GameStateData cached = this.snapshot;
+        if (cached != null && cached.getVersion() == this.getVersion()) {
+            return cached;
+        }
+        synchronized (this) {
+            cached = this.snapshot;
+            if (cached == null || cached.getVersion() != this.getVersion()) {
+                cached = new GameStateData(this);
+                this.snapshot = cached;
+            }
+            return cached;
+        }
     }
 }
@@ -1,26 +1,64 @@
-import java.io.Serializable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class GameStateData extends ServerInfo implements Serializable {
+public class GameStateData extends ServerInfo {
 
     private static final long serialVersionUID = 1252902354451108217L;
 
-    private final Map<String, PlayerInfo> playerMap;
-    private final Set<Position> treasurePositions;
+    private Map<String, PlayerInfo> playerMap;
+    private Set<Position> treasurePositions;
+    private long version;
+    // decoded positions are the canonical instances of this grid, 0 if the grid is unknown
+    private int gridSize;
+
+    public GameStateData() {
+        this.playerMap = new HashMap<>();
+        this.treasurePositions = new HashSet<>();
+    }
 
     public GameStateData(GameState gameState) {
         super(gameState);
-        this.playerMap = new HashMap<>(gameState.getPlayerMap());
+        // player infos are updated in place by the game state, so they are copied
+        this.playerMap = new HashMap<>(gameState.getPlayerMap().size() * 2);
+        for (PlayerInfo player : gameState.getPlayerMap().values()) {
+            this.playerMap.put(player.getId(), new PlayerInfo(player));
+        }
         this.treasurePositions = new HashSet<>(gameState.getTreasurePositions());
+        this.version = gameState.getVersion();
+        this.gridSize = gameState.getGridSize();
     }
 
     public GameStateData(GameStateData gameStateData) {
         super(gameStateData);
         this.playerMap = new HashMap<>(gameStateData.getPlayerMap());
         this.treasurePositions = new HashSet<>(gameStateData.getTreasurePositions());
+        this.version = gameStateData.getVersion();
+        this.gridSize = gameStateData.getGridSize();
+    }
+
+    /**
+     * Combines the data of all regions of a sharded grid into one view. Server names are taken from the
+     * first part, versions of different regions are unrelated, so the caller numbers the view.
+     */
+    public static GameStateData merge(List<GameStateData> parts, long version) {
+        GameStateData merged = new GameStateData();
+        for (GameStateData part : parts) {
+            if (merged.getPrimaryServer() == null) {
+                merged.setPrimaryServer(part.getPrimaryServer());
+                merged.setBackupServer(part.getBackupServer());
+            }
+            merged.playerMap.putAll(part.getPlayerMap());
+            merged.treasurePositions.addAll(part.getTreasurePositions());
+            merged.gridSize = Math.max(merged.gridSize, part.getGridSize());
+        }
+        merged.version = version;
+        return merged;
     }
 
     public Map<String, PlayerInfo> getPlayerMap() {
@@ -31,11 +69,113 @@ public class GameStateData extends ServerInfo implements Serializable {
         return treasurePositions;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Applies changes in sequence order. Changes already covered by this data are skipped.
+     *
+     * @return false if the changes do not continue from the current version, nothing is applied then
+     */
+    public boolean applyChanges(List<StateChange> changes) {
+        for (StateChange change : changes) {
+            if (change.getSequence() <= this.version) {
+                continue;
+            }
+            if (change.getSequence() != this.version + 1) {
+                return false;
+            }
+            break;
+        }
+        for (StateChange change : changes) {
+            if (change.getSequence() == this.version + 1) {
+                this.applyChange(change);
+            }
+        }
+        return true;
+    }
+
+    private void applyChange(StateChange change) {
+        // player infos may be shared with other copies of the data, so they are replaced instead of updated
+        PlayerInfo player = change.getPlayerId() == null ? null : this.playerMap.get(change.getPlayerId());
+        switch (change.getType()) {
+            case PLAYER_JOINED:
+                PlayerInfo joined = new PlayerInfo(change.getPlayerId(), change.getPosition());
+                joined.setPoints(change.getPoints());
+                this.playerMap.put(change.getPlayerId(), joined);
+                break;
+            case PLAYER_LEFT:
+                this.playerMap.remove(change.getPlayerId());
+                break;
+            case PLAYER_MOVED:
+                if (player != null) {
+                    PlayerInfo moved = new PlayerInfo(player);
+                    moved.setPosition(change.getPosition());
+                    this.playerMap.put(moved.getId(), moved);
+                }
+                break;
+            case POINTS_CHANGED:
+                if (player != null) {
+                    PlayerInfo scored = new PlayerInfo(player);
+                    scored.setPoints(change.getPoints());
+                    this.playerMap.put(scored.getId(), scored);
+                }
+                break;
+            case TREASURE_MOVED:
+                this.treasurePositions.remove(change.getPreviousPosition());
+                this.treasurePositions.add(change.getPosition());
+                break;
+        }
+        this.version = change.getSequence();
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws IOException {
+        super.writeTo(out);
+        BinaryCodec.writeZigZagLong(out, this.version);
+        BinaryCodec.writeVarInt(out, this.gridSize);
+        // player ids are only written as part of the player info, the map is rebuilt from them
+        BinaryCodec.writeVarInt(out, this.playerMap.size());
+        for (PlayerInfo player : this.playerMap.values()) {
+            player.writeTo(out);
+        }
+        BinaryCodec.writeVarInt(out, this.treasurePositions.size());
+        for (Position position : this.treasurePositions) {
+            BinaryCodec.writePosition(out, position);
+        }
+    }
+
+    @Override
+    public void readFrom(DataInput in) throws IOException {
+        super.readFrom(in);
+        this.version = BinaryCodec.readZigZagLong(in);
+        this.gridSize = BinaryCodec.readVarInt(in);
+        int players = BinaryCodec.readVarInt(in);
+        this.playerMap = new HashMap<>(players * 2);
+        for (int i = 0; i < players; i++) {
+            PlayerInfo player = new PlayerInfo();
+            player.readFrom(in, this.gridSize);
+            this.playerMap.put(player.getId(), player);
+        }
+        int treasures = BinaryCodec.readVarInt(in);
+        this.treasurePositions = new HashSet<>(treasures * 2);
+        for (int i = 0; i < treasures; i++) {
+            this.treasurePositions.add(BinaryCodec.readPosition(in, this.gridSize));
+        }
+    }
+
     @Override
     public String toString() {
         return "GameStateData{" +
                 "playerMap=" + playerMap +
                 ", treasurePositions=" + treasurePositions +
+                ", version=" + version +
+                ", gridSize=" + gridSize +
                 '}';
     }
 }
@@ -0,0 +1,127 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class GameStateDelta extends ServerInfo {
+
+    private static final long serialVersionUID = -2178873508512944196L;
+
+    private long baseVersion;
+    private long version;
+    // positions of the changes are resolved against this grid, 0 if it is unknown
+    private int gridSize;
+    private List<StateChange> changes;
+    // set instead of changes when the client is too far behind
+    private GameStateData snapshot;
+
+    // only for deserialization
+    public GameStateDelta() {}
+
+    private GameStateDelta(ServerInfo serverInfo, int gridSize, long baseVersion, long version,
+                           List<StateChange> changes, GameStateData snapshot) {
+        super(serverInfo);
+        this.gridSize = gridSize;
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.changes = changes;
+        this.snapshot = snapshot;
+    }
+
+    public static GameStateDelta ofChanges(GameState gameState, long baseVersion, List<StateChange> changes) {
+        long version = changes.isEmpty() ? baseVersion : changes.get(changes.size() - 1).getSequence();
+        return new GameStateDelta(gameState, gameState.getGridSize(), baseVersion, version, changes, null);
+    }
+
+    public static GameStateDelta ofSnapshot(GameStateData snapshot) {
+        return new GameStateDelta(snapshot, snapshot.getGridSize(), -1, snapshot.getVersion(),
+                Collections.emptyList(), snapshot);
+    }
+
+    /**
+     * @return the changes of the state after the given version, or a snapshot if they are no longer kept
+     *      or would be larger than the state itself
+     */
+    public static GameStateDelta since(GameState gameState, long version) {
+        List<StateChange> changes = gameState.getChangesSince(version);
+        int stateSize = gameState.getPlayerMap().size() + gameState.getTreasurePositions().size();
+        if (changes == null || changes.size() > stateSize) {
+            return ofSnapshot(gameState.exportGameData());
+        }
+        return ofChanges(gameState, version, changes);
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    public List<StateChange> getChanges() {
+        return changes;
+    }
+
+    public GameStateData getSnapshot() {
+        return snapshot;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot != null;
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws IOException {
+        super.writeTo(out);
+        BinaryCodec.writeZigZagLong(out, this.baseVersion);
+        BinaryCodec.writeZigZagLong(out, this.version);
+        BinaryCodec.writeVarInt(out, this.gridSize);
+        out.writeBoolean(this.snapshot != null);
+        if (this.snapshot != null) {
+            this.snapshot.writeTo(out);
+            return;
+        }
+        BinaryCodec.writeVarInt(out, this.changes.size());
+        for (StateChange change : this.changes) {
+            change.writeTo(out);
+        }
+    }
+
+    @Override
+    public void readFrom(DataInput in) throws IOException {
+        super.readFrom(in);
+        this.baseVersion = BinaryCodec.readZigZagLong(in);
+        this.version = BinaryCodec.readZigZagLong(in);
+        this.gridSize = BinaryCodec.readVarInt(in);
+        if (in.readBoolean()) {
+            this.snapshot = new GameStateData();
+            this.snapshot.readFrom(in);
+            this.changes = Collections.emptyList();
+            return;
+        }
+        int size = BinaryCodec.readVarInt(in);
+        this.changes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StateChange change = new StateChange();
+            change.readFrom(in, this.gridSize);
+            this.changes.add(change);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GameStateDelta{" +
+                "baseVersion=" + baseVersion +
+                ", version=" + version +
+                ", changes=" + changes.size() +
+                ", snapshot=" + isSnapshot() +
+                '}';
+    }
+}
@@ -0,0 +1,15 @@
+import java.rmi.RemoteException;
+
+public class GameSubscriber implements IGameSubscriber {
+
+    private final Game game;
+
+    public GameSubscriber(Game game) {
+        this.game = game;
+    }
+
+    @Override
+    public void onGameUpdate(GameStateDelta delta) throws RemoteException {
+        this.game.onGameUpdate(delta);
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Liveness record of one player. A ping records the interval since the previous one and moves the
+ * deadline to the silence after which the phi accrual detector suspects the player under the policy of
+ * its role. The timing wheel reads the new deadline lazily when the old one comes due.
+ */
+public class Heartbeat {
+
+	private final String playerId;
+	private final PhiAccrualDetector detector = new PhiAccrualDetector(Constants.FAILURE_DETECTOR_WINDOW);
+	private FailureDetectorPolicy policy;
+	private volatile long lastSeen;
+	private volatile long deadline;
+	private volatile boolean cancelled;
+
+	public Heartbeat(String playerId, long lastSeen, FailureDetectorPolicy policy) {
+		this.playerId = playerId;
+		this.lastSeen = lastSeen;
+		this.policy = policy;
+		this.deadline = lastSeen + this.detector.timeoutMillis(policy);
+	}
+
+	public String getPlayerId() {
+		return playerId;
+	}
+
+	public long getLastSeen() {
+		return lastSeen;
+	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	public synchronized FailureDetectorPolicy getPolicy() {
+		return policy;
+	}
+
+	public synchronized void beat(long now, FailureDetectorPolicy policy) {
+		this.detector.record(now - this.lastSeen);
+		this.policy = policy;
+		this.lastSeen = now;
+		this.deadline = now + this.detector.timeoutMillis(policy);
+	}
+
+	public synchronized double phi(long now) {
+		return this.detector.phi(now - this.lastSeen, this.policy);
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public void cancel() {
+		this.cancelled = true;
+	}
+}
@@ -0,0 +1,83 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timing wheel of heartbeat deadlines. Each slot holds the heartbeats due within one tick, so
+ * advancing the wheel only visits heartbeats whose deadline has come. A heartbeat that was pinged in the
+ * meantime is moved to the slot of its new deadline instead of expiring, which keeps pings down to a
+ * single field write. Only the thread calling advance touches the slots.
+ */
+public class HeartbeatWheel {
+
+	private final long tickMillis;
+	private final List<List<Heartbeat>> slots;
+	// heartbeats registered since the last advance
+	private final ConcurrentLinkedQueue<Heartbeat> arrivals = new ConcurrentLinkedQueue<>();
+	// next tick to process, tick t covers the times from t * tickMillis up to (t + 1) * tickMillis
+	private long nextTick = -1;
+
+	public HeartbeatWheel(long maxTimeoutMillis, long tickMillis) {
+		this.tickMillis = tickMillis;
+		// deadlines are never more than the longest timeout ahead, so no slot is shared by two rounds
+		int slotCount = (int) (maxTimeoutMillis / tickMillis) + 2;
+		this.slots = new ArrayList<>(slotCount);
+		for (int i = 0; i < slotCount; i++) {
+			this.slots.add(new ArrayList<>());
+		}
+	}
+
+	public long getTickMillis() {
+		return tickMillis;
+	}
+
+	public Heartbeat register(String playerId, long now, FailureDetectorPolicy policy) {
+		Heartbeat heartbeat = new Heartbeat(playerId, now, policy);
+		this.arrivals.add(heartbeat);
+		return heartbeat;
+	}
+
+	/**
+	 * Puts an expired heartbeat back, it expires again on the next tick unless it was pinged meanwhile.
+	 */
+	public void retry(Heartbeat heartbeat) {
+		this.arrivals.add(heartbeat);
+	}
+
+	/**
+	 * Processes all ticks that have fully passed.
+	 * @return heartbeats whose deadline passed without a ping, in deadline order
+	 */
+	public List<Heartbeat> advance(long now) {
+		if (this.nextTick < 0) {
+			this.nextTick = now / this.tickMillis;
+		}
+		for (Heartbeat heartbeat = this.arrivals.poll(); heartbeat != null; heartbeat = this.arrivals.poll()) {
+			this.schedule(heartbeat);
+		}
+		List<Heartbeat> expired = new ArrayList<>();
+		while ((this.nextTick + 1) * this.tickMillis <= now) {
+			int index = (int) (this.nextTick % this.slots.size());
+			List<Heartbeat> due = this.slots.get(index);
+			this.slots.set(index, new ArrayList<>());
+			this.nextTick++;
+			for (Heartbeat heartbeat : due) {
+				if (heartbeat.isCancelled()) {
+					continue;
+				}
+				if (heartbeat.getDeadline() <= now) {
+					expired.add(heartbeat);
+				} else {
+					this.schedule(heartbeat);
+				}
+			}
+		}
+		return expired;
+	}
+
+	private void schedule(Heartbeat heartbeat) {
+		// a deadline in an already processed tick goes into the next tick to process
+		long tick = Math.max(heartbeat.getDeadline() / this.tickMillis, this.nextTick);
+		this.slots.get((int) (tick % this.slots.size())).add(heartbeat);
+	}
+}
@@ -1,7 +1,15 @@
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface IBackupServer extends Remote {
     GameStateData getGameData() throws RemoteException;
     void updateGameData(GameStateData gameStateData) throws RemoteException;
+
+    /**
+     * Applies a batch of state changes in sequence order.
+     * @return version of the backup data afterwards, -1 if the backup has no data yet.
+     * 		The caller sends a full snapshot when this is not the sequence of the last change.
+     */
+    long applyChanges(List<StateChange> changes) throws RemoteException;
 }
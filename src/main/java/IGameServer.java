@@ -1,3 +1,4 @@
+import java.net.InetSocketAddress;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 
@@ -5,6 +6,36 @@ public interface IGameServer extends Remote {
     GameStateData getGameData() throws RemoteException;
     GameStateData addPlayer(String playerId) throws RemoteException;
     GameStateData movePlayer(String playerId, Direction direction) throws RemoteException;
+
+    /**
+     * Same as getGameData, but only returns what changed after the given version.
+     * A full snapshot is returned when the server no longer keeps those changes.
+     */
+    GameStateDelta getGameDataSince(long version) throws RemoteException;
+
+    /**
+     * Same as movePlayer, but only returns what changed after the given version.
+     */
+    GameStateDelta movePlayerSince(String playerId, Direction direction, long version) throws RemoteException;
     void changeBackupServer(String backupServer) throws RemoteException;
     void removePlayer(String playerId) throws RemoteException;
+
+    /**
+     * Registers a callback that receives the changes after the given version and then every later update.
+     * A new subscription of the same player replaces the old one.
+     */
+    void subscribe(String playerId, IGameSubscriber subscriber, long version) throws RemoteException;
+
+    void unsubscribe(String playerId) throws RemoteException;
+
+    /**
+     * Takes over a player that moves in from a neighbouring region of a sharded grid.
+     * @return false if the position is taken or not owned by this server, the player then stays where it was
+     */
+    boolean acceptPlayer(String playerId, Position position, int points) throws RemoteException;
+
+    /**
+     * @return address of the NIO endpoint serving the same operations, null if only RMI is served
+     */
+    InetSocketAddress getNioAddress() throws RemoteException;
 }
@@ -0,0 +1,10 @@
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+public interface IGameSubscriber extends Remote {
+    /**
+     * Called by the game server whenever the game changed. Updates that pile up while a call is in
+     * flight are coalesced into the next delta.
+     */
+    void onGameUpdate(GameStateDelta delta) throws RemoteException;
+}
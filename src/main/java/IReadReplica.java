@@ -0,0 +1,15 @@
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Copy of the game state that answers refreshes in place of the primary server. The copy follows the
+ * primary asynchronously, the version of the returned delta tells how recent it is.
+ */
+public interface IReadReplica extends Remote {
+
+    /**
+     * Same as IGameServer.getGameDataSince, served from the copy.
+     * @throws RemoteException if the replica has no copy yet
+     */
+    GameStateDelta getGameDataSince(long version) throws RemoteException;
+}
@@ -13,11 +13,28 @@ public interface ITracker extends Remote {
 
 	/**
 	 * Players call this method to notify alive
-	 * @return PRIMARY_SERVER - selected as primary server
-	 * 		    BACKUP_SERVER - selected as backup server
-	 * 		    NORMAL_PLAYER - do nothing
+	 * @param serverEpoch the last server epoch the player has seen, -1 if none
+	 * @return the role of the player, PRIMARY_SERVER or BACKUP_SERVER if it has been selected as one,
+	 * 		and the primary servers if the server epoch changed
 	 */
-	ClientType ping(String playerId) throws RemoteException;
+	PingReply ping(String playerId, long serverEpoch) throws RemoteException;
+
+	/**
+	 * Waits until the server epoch differs from the given one or the timeout passes, for players whose
+	 * game server stopped answering. Does not count as a ping.
+	 */
+	PingReply awaitServerChange(String playerId, long serverEpoch, long timeoutMillis) throws RemoteException;
+
+	/**
+	 * Called by a primary server once it serves the game, the tracker announces it with the next epoch.
+	 */
+	void registerGameServer(int region, IGameServer gameServer) throws RemoteException;
+
+	/**
+	 * Called by the backup server and by players hosting a read replica once the replica can serve
+	 * refreshes, the tracker announces it with the next epoch. Only used if the grid is not sharded.
+	 */
+	void registerReadReplica(String playerId, IReadReplica readReplica) throws RemoteException;
 
 	void quit(String playerId) throws RemoteException;
 
@@ -26,4 +43,14 @@ public interface ITracker extends Remote {
 	Set<String> getPlayerSet() throws RemoteException;
 
 	ServerInfo getServerInfo() throws RemoteException;
+
+	/**
+	 * @return primary and backup server of the given region, region 0 is the whole grid unless it is sharded
+	 */
+	ServerInfo getRegionServerInfo(int region) throws RemoteException;
+
+	/**
+	 * @return the region the player serves as primary or backup server, -1 for a normal player
+	 */
+	int getRegion(String playerId) throws RemoteException;
 }
@@ -0,0 +1,293 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.ExportException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs thousands of simulated players in one JVM against a real tracker, primary and backup server,
+ * all talking RMI over the loopback interface. Requests arrive open loop at a fixed mean rate with
+ * exponential gaps, and latency is taken from the moment a request was due, so a server that falls
+ * behind shows up as queueing delay instead of a lower request rate. Every joined player also pings the
+ * tracker once per heartbeat interval like a real one.
+ *
+ * Usage: java LoadGenerator [players] [requestsPerSecond] [seconds] [move:refresh:churn] [gridSize] [workers]
+ *   e.g. java LoadGenerator 2000 5000 30 80:18:2 100 64
+ */
+public class LoadGenerator {
+
+    private static final int TREASURES = 10;
+    private static final int DRAIN_SECONDS = 5;
+    private static final String[] OPERATIONS = {"movePlayerSince", "getGameDataSince", "addPlayer", "removePlayer", "ping"};
+
+    private final int players;
+    private final double requestsPerSecond;
+    private final int movePercent;
+    private final int refreshPercent;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService pingers;
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> errors = new LinkedHashMap<>();
+    private SimulatedPlayer[] simulatedPlayers;
+    private ITracker tracker;
+    private IGameServer gameServer;
+    private int backlog;
+
+    public LoadGenerator(int players, double requestsPerSecond, int movePercent, int refreshPercent, int workers) {
+        this.players = players;
+        this.requestsPerSecond = requestsPerSecond;
+        this.movePercent = movePercent;
+        this.refreshPercent = refreshPercent;
+        this.workers = Executors.newFixedThreadPool(workers, daemon("load-generator-worker"));
+        this.pingers = Executors.newScheduledThreadPool(Math.max(1, workers / 8), daemon("load-generator-pinger"));
+        for (String operation : OPERATIONS) {
+            this.histograms.put(operation, new LatencyHistogram());
+            this.errors.put(operation, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 5000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        String[] mix = (args.length > 3 ? args[3] : "80:18:2").split(":");
+        int gridSize = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        int workers = args.length > 5 ? Integer.parseInt(args[5]) : 64;
+        if (players + TREASURES + 2 > gridSize * gridSize) {
+            System.out.println("Grid " + gridSize + "x" + gridSize + " cannot hold " + players + " players");
+            System.exit(0);
+        }
+
+        PrintStream console = System.out;
+        // the servers log every request, which would dominate the measurement
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        LoadGenerator generator = new LoadGenerator(players, rate, Integer.parseInt(mix[0]),
+                Integer.parseInt(mix[1]), workers);
+        generator.startCluster(gridSize);
+        generator.joinAll();
+        console.println("players=" + players + ", rate=" + rate + "/s, seconds=" + seconds + ", mix(move:refresh:churn)="
+                + String.join(":", mix) + ", grid=" + gridSize + ", workers=" + workers);
+        long requests = generator.run(seconds);
+        // requests still running keep logging, so the report goes to the console directly
+        generator.report(console, requests, seconds);
+        System.exit(0);
+    }
+
+    /**
+     * Starts a registry unless one is running, the tracker, and the primary and backup server as the first
+     * two players of the game.
+     */
+    private void startCluster(int gridSize) throws Exception {
+        Registry registry;
+        try {
+            registry = LocateRegistry.createRegistry(Constants.DEFAULT_RMI_REGISTRY_PORT);
+        } catch (ExportException e) {
+            registry = LocateRegistry.getRegistry(Constants.DEFAULT_RMI_REGISTRY_PORT);
+        }
+        Tracker tracker = new Tracker(TREASURES, gridSize);
+        this.tracker = tracker.exportAndBind(registry, 0);
+        tracker.startFailureDetector();
+
+        Game primary = newServerGame("primary", registry);
+        if (this.tracker.addPlayer(primary.getPlayerID()) != ClientType.PRIMARY_SERVER) {
+            throw new IllegalStateException("Tracker already has a primary server");
+        }
+        primary.registerPrimaryServer();
+        Game backup = newServerGame("backup", registry);
+        this.tracker.addPlayer(backup.getPlayerID());
+        backup.registerBackupServer();
+        this.gameServer = (IGameServer) registry.lookup(Constants.PRIMARY_GAME_SERVER_STUB_NAME);
+        this.schedulePings(primary.getPlayerID());
+        this.schedulePings(backup.getPlayerID());
+    }
+
+    private Game newServerGame(String playerId, Registry registry) throws RemoteException {
+        Game game = new Game(playerId, "127.0.0.1");
+        game.setRegistry(registry);
+        game.setTracker(this.tracker);
+        game.setGameMeta(this.tracker.getGameMeta());
+        return game;
+    }
+
+    private void joinAll() throws Exception {
+        this.simulatedPlayers = new SimulatedPlayer[this.players];
+        for (int i = 0; i < this.players; i++) {
+            this.simulatedPlayers[i] = new SimulatedPlayer(PlayerIds.of(i));
+            this.simulatedPlayers[i].join(this);
+        }
+        // the joins of the set-up are not part of the measurement
+        this.histograms.put("addPlayer", new LatencyHistogram());
+        this.histograms.put("ping", new LatencyHistogram());
+    }
+
+    /**
+     * @return the pings of the player, to be cancelled when it quits, or null after the end of the run
+     */
+    private ScheduledFuture<?> schedulePings(String playerId) {
+        long offset = ThreadLocalRandom.current().nextLong(Constants.HEARTBEAT_INTERVAL_MILLIS);
+        try {
+            return this.pingers.scheduleAtFixedRate(() -> this.timed("ping", System.nanoTime(), () -> {
+                this.tracker.ping(playerId, -1);
+                return null;
+            }), offset, Constants.HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // a join that finished after the end of the run
+            return null;
+        }
+    }
+
+    /**
+     * Issues requests at the configured rate for the given time and gives the queued ones a few seconds
+     * to finish. Requests still queued after that are dropped and reported as backlog.
+     * @return the number of requests issued
+     */
+    private long run(int seconds) throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        double meanGapNanos = 1e9 / this.requestsPerSecond;
+        long due = start;
+        long requests = 0;
+        while (true) {
+            due += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            SimulatedPlayer player = this.simulatedPlayers[random.nextInt(this.players)];
+            int dice = random.nextInt(100);
+            long requestDue = due;
+            this.workers.execute(() -> player.act(this, dice, requestDue));
+            requests++;
+        }
+        this.workers.shutdown();
+        if (!this.workers.awaitTermination(DRAIN_SECONDS, TimeUnit.SECONDS)) {
+            this.backlog = this.workers.shutdownNow().size();
+        }
+        this.pingers.shutdownNow();
+        return requests;
+    }
+
+    private <T> T timed(String operation, long due, RemoteCall<T> call) {
+        try {
+            T result = call.call();
+            this.histograms.get(operation).record(System.nanoTime() - due);
+            return result;
+        } catch (Exception e) {
+            this.errors.get(operation).incrementAndGet();
+            return null;
+        }
+    }
+
+    private void report(PrintStream out, long requests, int seconds) {
+        out.printf("issued %d requests, %.0f requests/s, %d not started %ds after the end%n", requests,
+                requests / (double) seconds, this.backlog, DRAIN_SECONDS);
+        out.printf("%-18s %10s %8s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "errors",
+                "per sec", "mean us", "p50 us", "p99 us", "p99.9 us", "max us");
+        for (String operation : OPERATIONS) {
+            LatencyHistogram histogram = this.histograms.get(operation);
+            out.printf("%-18s %10d %8d %10.0f %10.1f %10.1f %10.1f %10.1f %10.1f%n", operation,
+                    histogram.getCount(), this.errors.get(operation).get(), histogram.getCount() / (double) seconds,
+                    histogram.getMean() / 1000, histogram.getPercentile(50) / 1000.0,
+                    histogram.getPercentile(99) / 1000.0, histogram.getPercentile(99.9) / 1000.0,
+                    histogram.getMax() / 1000.0);
+        }
+    }
+
+    private static java.util.concurrent.ThreadFactory daemon(String name) {
+        AtomicLong count = new AtomicLong();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private interface RemoteCall<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * A player's state between requests. Requests of one player are serialised like those of a real
+     * client, which waits for each reply.
+     */
+    private static class SimulatedPlayer {
+        private final String playerId;
+        private long version = -1;
+        private boolean joined;
+        private ScheduledFuture<?> pings;
+
+        SimulatedPlayer(String playerId) {
+            this.playerId = playerId;
+        }
+
+        synchronized void act(LoadGenerator generator, int dice, long due) {
+            if (!this.joined) {
+                // a player that left comes back with its next request
+                this.join(generator, due);
+            } else if (dice < generator.movePercent) {
+                Direction direction = Direction.getDirectionByNumber(1 + ThreadLocalRandom.current().nextInt(4));
+                this.apply(generator.timed("movePlayerSince", due,
+                        () -> generator.gameServer.movePlayerSince(this.playerId, direction, this.version)));
+            } else if (dice < generator.movePercent + generator.refreshPercent) {
+                this.apply(generator.timed("getGameDataSince", due,
+                        () -> generator.gameServer.getGameDataSince(this.version)));
+            } else {
+                // the tracker removes the player from the game server
+                generator.timed("removePlayer", due, () -> {
+                    generator.tracker.quit(this.playerId);
+                    return null;
+                });
+                if (this.pings != null) {
+                    this.pings.cancel(false);
+                    this.pings = null;
+                }
+                this.joined = false;
+                this.version = -1;
+            }
+        }
+
+        synchronized void join(LoadGenerator generator) {
+            this.join(generator, System.nanoTime());
+        }
+
+        private void join(LoadGenerator generator, long due) {
+            GameStateData data = generator.timed("addPlayer", due, () -> {
+                generator.tracker.addPlayer(this.playerId);
+                return generator.gameServer.addPlayer(this.playerId);
+            });
+            if (data != null) {
+                this.version = data.getVersion();
+                if (!this.joined) {
+                    this.pings = generator.schedulePings(this.playerId);
+                }
+                this.joined = true;
+            }
+        }
+
+        private void apply(GameStateDelta delta) {
+            if (delta != null) {
+                this.version = delta.getVersion();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+public enum LogLevel {
+    // per-move outcomes and other lines a busy server writes for every request
+    DEBUG("[Debug]"),
+    INFO("[Info]"),
+    WARN("[Warning]"),
+    ERROR("[Error]"),
+    OFF("");
+
+    private final String tag;
+
+    LogLevel(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return this.tag;
+    }
+
+    public static LogLevel fromSystemProperties() {
+        return LogLevel.valueOf(System.getProperty(Constants.LOG_LEVEL_PROPERTY, INFO.name()).toUpperCase());
+    }
+}
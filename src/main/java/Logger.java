@@ -1,5 +1,36 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Leveled logger writing to System.out from a background thread. A call below the level returns after
+ * one comparison, messages take {} placeholders so nothing is formatted for a disabled level. Enabled
+ * lines are formatted on the calling thread, the arguments may change once the call returns, and queued
+ * on a bounded ring buffer. When the buffer is full, debug and info lines are dropped and counted unless
+ * maze.log.overflow is block; warnings and errors always wait for room.
+ */
 public class Logger {
 
+    private static final BlockingQueue<Line> buffer = new ArrayBlockingQueue<>(
+            Integer.getInteger(Constants.LOG_BUFFER_SIZE_PROPERTY, Constants.DEFAULT_LOG_BUFFER_SIZE));
+    private static final boolean blockOnOverflow = "block".equalsIgnoreCase(
+            System.getProperty(Constants.LOG_OVERFLOW_PROPERTY, "drop"));
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong queued = new AtomicLong();
+    private static final AtomicLong written = new AtomicLong();
+    private static volatile LogLevel level = LogLevel.fromSystemProperties();
+
+    static {
+        Thread writer = new Thread(Logger::runWriter, "logger");
+        writer.setDaemon(true);
+        writer.start();
+        // lines logged right before System.exit are still written
+        Runtime.getRuntime().addShutdownHook(new Thread(Logger::flush, "logger-flush"));
+    }
+
     private final String className;
 
     private Logger(String className) {
@@ -10,27 +41,227 @@ public class Logger {
         return new Logger(clazz == null ? "Null" : clazz.getName());
     }
 
+    public static void setLevel(LogLevel newLevel) {
+        level = newLevel;
+    }
+
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    public boolean isEnabled(LogLevel lineLevel) {
+        return lineLevel.compareTo(level) >= 0 && lineLevel != LogLevel.OFF;
+    }
+
+    public boolean isDebugEnabled() {
+        return this.isEnabled(LogLevel.DEBUG);
+    }
+
+    public boolean isInfoEnabled() {
+        return this.isEnabled(LogLevel.INFO);
+    }
+
+    public void debug(String msg) {
+        if (this.isEnabled(LogLevel.DEBUG)) {
+            this.log(LogLevel.DEBUG, msg);
+        }
+    }
+
+    public void debug(String format, Object arg) {
+        if (this.isEnabled(LogLevel.DEBUG)) {
+            this.log(LogLevel.DEBUG, format(format, arg));
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (this.isEnabled(LogLevel.DEBUG)) {
+            this.log(LogLevel.DEBUG, format(format, arg1, arg2));
+        }
+    }
+
+    public void debug(String format, Object... args) {
+        if (this.isEnabled(LogLevel.DEBUG)) {
+            this.log(LogLevel.DEBUG, format(format, args));
+        }
+    }
+
     public void info(String msg) {
-        System.out.println("[Info]" + "[" + this.className + "] " + msg);
+        if (this.isEnabled(LogLevel.INFO)) {
+            this.log(LogLevel.INFO, msg);
+        }
+    }
+
+    public void info(String format, Object arg) {
+        if (this.isEnabled(LogLevel.INFO)) {
+            this.log(LogLevel.INFO, format(format, arg));
+        }
+    }
+
+    public void info(String format, Object arg1, Object arg2) {
+        if (this.isEnabled(LogLevel.INFO)) {
+            this.log(LogLevel.INFO, format(format, arg1, arg2));
+        }
+    }
+
+    public void info(String format, Object... args) {
+        if (this.isEnabled(LogLevel.INFO)) {
+            this.log(LogLevel.INFO, format(format, args));
+        }
     }
 
     public void warn(String msg) {
-        System.out.println("[Warning]" + "[" + this.className + "] " + msg);
+        if (this.isEnabled(LogLevel.WARN)) {
+            this.log(LogLevel.WARN, msg);
+        }
+    }
+
+    public void warn(String format, Object arg) {
+        if (this.isEnabled(LogLevel.WARN)) {
+            this.log(LogLevel.WARN, format(format, arg));
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        if (this.isEnabled(LogLevel.WARN)) {
+            this.log(LogLevel.WARN, format(format, arg1, arg2));
+        }
+    }
+
+    public void warn(String format, Object... args) {
+        if (this.isEnabled(LogLevel.WARN)) {
+            this.log(LogLevel.WARN, format(format, args));
+        }
     }
 
     public void error(String msg) {
-        System.out.println("[Error]" + "[" + this.className + "] " + msg);
+        if (this.isEnabled(LogLevel.ERROR)) {
+            this.log(LogLevel.ERROR, msg);
+        }
+    }
+
+    public void error(String format, Object arg) {
+        if (this.isEnabled(LogLevel.ERROR)) {
+            this.log(LogLevel.ERROR, format(format, arg));
+        }
+    }
+
+    public void error(String format, Object arg1, Object arg2) {
+        if (this.isEnabled(LogLevel.ERROR)) {
+            this.log(LogLevel.ERROR, format(format, arg1, arg2));
+        }
+    }
+
+    public void error(String format, Object... args) {
+        if (this.isEnabled(LogLevel.ERROR)) {
+            this.log(LogLevel.ERROR, format(format, args));
+        }
+    }
+
+    private void log(LogLevel lineLevel, String msg) {
+        // the stream is taken now, benchmarks swap System.out to silence a measured section
+        Line line = new Line(System.out, lineLevel.getTag() + "[" + this.className + "] " + msg);
+        if (!blockOnOverflow && lineLevel.compareTo(LogLevel.WARN) < 0) {
+            if (buffer.offer(line)) {
+                queued.incrementAndGet();
+            } else {
+                dropped.incrementAndGet();
+            }
+            return;
+        }
+        try {
+            buffer.put(line);
+            queued.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            line.stream.println(line.text);
+        }
+    }
+
+    static String format(String format, Object... args) {
+        StringBuilder builder = new StringBuilder(format.length() + 16 * args.length);
+        int from = 0;
+        for (Object arg : args) {
+            int at = format.indexOf("{}", from);
+            if (at < 0) {
+                break;
+            }
+            builder.append(format, from, at).append(arg);
+            from = at + 2;
+        }
+        return builder.append(format, from, format.length()).toString();
+    }
+
+    private static void runWriter() {
+        List<Line> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            buffer.drainTo(batch);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private static synchronized void write(List<Line> batch) {
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            batch.get(0).stream.println(LogLevel.WARN.getTag() + "[" + Logger.class.getName() + "] "
+                    + lost + " log lines dropped, the log buffer was full");
+        }
+        // one write per run of lines to the same stream instead of one per line
+        StringBuilder text = new StringBuilder();
+        PrintStream stream = batch.get(0).stream;
+        for (Line line : batch) {
+            if (line.stream != stream) {
+                stream.print(text);
+                text.setLength(0);
+                stream = line.stream;
+            }
+            text.append(line.text).append(System.lineSeparator());
+        }
+        stream.print(text);
+        stream.flush();
+        written.addAndGet(batch.size());
+    }
+
+    private static void flush() {
+        List<Line> batch = new ArrayList<>();
+        buffer.drainTo(batch);
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+        // the writer may hold lines it took but has not written yet
+        long deadline = System.currentTimeMillis() + 1000;
+        while (written.get() < queued.get() && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
     }
 
     public static void logGameData(Logger logger, GameStateData gameData) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
         logger.info("Game data shown below:");
         for (PlayerInfo player : gameData.getPlayerMap().values()) {
-            logger.info(player.getId() + " Points: " + player.getPoints() + " Pos: " + player.getPosition().toString());
+            logger.info("{} Points: {} Pos: {}", player.getId(), player.getPoints(), player.getPosition());
         }
         int index = 1;
         for (Position treasurePos : gameData.getTreasurePositions()) {
-            logger.info("Treasure" + index + ": " + treasurePos.toString());
+            logger.info("Treasure{}: {}", index, treasurePos);
             index++;
         }
     }
+
+    private static class Line {
+        private final PrintStream stream;
+        private final String text;
+
+        Line(PrintStream stream, String text) {
+            this.stream = stream;
+            this.text = text;
+        }
+    }
 }
@@ -0,0 +1,104 @@
+import javax.swing.JComponent;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Paints the maze cell by cell. A new frame marks only the cells whose occupant changed for repainting,
+ * and painting covers only the clip, which Swing keeps within the visible part of the maze. The cost of
+ * a frame follows the number of changes and the size of the viewport, not the size of the grid.
+ */
+public class MazeView extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int CELL_SIZE = 24;
+    public static final String TREASURE_LABEL = "**";
+
+    private static final Color GRID_COLOR = Color.LIGHT_GRAY;
+    private static final Color TREASURE_COLOR = new Color(255, 225, 110);
+    private static final Color LOCAL_PLAYER_COLOR = new Color(150, 200, 255);
+
+    private final int gridSize;
+    // occupied cells by cell index, the painting thread reads them while a new frame changes them
+    private final Map<Integer, String> occupants = new ConcurrentHashMap<>();
+    private volatile String localPlayerId;
+
+    public MazeView(int gridSize) {
+        this.gridSize = gridSize;
+        this.setPreferredSize(new Dimension(gridSize * CELL_SIZE + 1, gridSize * CELL_SIZE + 1));
+        this.setBackground(Color.WHITE);
+        this.setForeground(Color.BLACK);
+        this.setOpaque(true);
+        this.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+    }
+
+    public void setLocalPlayerId(String localPlayerId) {
+        this.localPlayerId = localPlayerId;
+    }
+
+    /**
+     * Changes the occupants of the given cells, a null occupant empties the cell, and repaints the cells
+     * that differ from the previous frame. Safe to call from any thread.
+     */
+    public void update(Map<Integer, String> changes) {
+        for (Map.Entry<Integer, String> change : changes.entrySet()) {
+            String previous = change.getValue() == null ? this.occupants.remove(change.getKey())
+                    : this.occupants.put(change.getKey(), change.getValue());
+            if (!Objects.equals(previous, change.getValue())) {
+                this.repaintCell(change.getKey());
+            }
+        }
+    }
+
+    public Rectangle getCellBounds(int cell) {
+        Position position = Position.ofCell(this.gridSize, cell);
+        return new Rectangle(position.getX() * CELL_SIZE, position.getY() * CELL_SIZE, CELL_SIZE + 1, CELL_SIZE + 1);
+    }
+
+    private void repaintCell(int cell) {
+        this.repaint(this.getCellBounds(cell));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = this.getVisibleRect();
+        }
+        g.setColor(this.getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int fromX = Math.max(0, clip.x / CELL_SIZE);
+        int fromY = Math.max(0, clip.y / CELL_SIZE);
+        int toX = Math.min(this.gridSize - 1, (clip.x + clip.width) / CELL_SIZE);
+        int toY = Math.min(this.gridSize - 1, (clip.y + clip.height) / CELL_SIZE);
+        Map<Integer, String> occupants = this.occupants;
+        String localPlayerId = this.localPlayerId;
+        FontMetrics metrics = g.getFontMetrics();
+        for (int x = fromX; x <= toX; x++) {
+            for (int y = fromY; y <= toY; y++) {
+                int left = x * CELL_SIZE;
+                int top = y * CELL_SIZE;
+                String label = occupants.get(x * this.gridSize + y);
+                if (label != null) {
+                    if (label.equals(TREASURE_LABEL) || label.equals(localPlayerId)) {
+                        g.setColor(label.equals(TREASURE_LABEL) ? TREASURE_COLOR : LOCAL_PLAYER_COLOR);
+                        g.fillRect(left, top, CELL_SIZE, CELL_SIZE);
+                    }
+                    g.setColor(this.getForeground());
+                    g.drawString(label, left + (CELL_SIZE - metrics.stringWidth(label)) / 2,
+                            top + (CELL_SIZE + metrics.getAscent() - metrics.getDescent()) / 2);
+                }
+                g.setColor(GRID_COLOR);
+                g.drawRect(left, top, CELL_SIZE, CELL_SIZE);
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Call counts, error counts and latency histograms per operation of one server, plus named counters and
+ * gauges. A registered instance is a JMX MBean named maze:type=&lt;type&gt;[,region=&lt;region&gt;] with
+ * attributes like movePlayerSinceCount or movePlayerSinceP99Micros, and is written to the log as one
+ * compact line every maze.metrics.dumpMillis.
+ */
+public class Metrics implements DynamicMBean {
+
+    private static final Logger logger = Logger.getLogger(Metrics.class);
+    private static final Set<Metrics> registered = ConcurrentHashMap.newKeySet();
+    private static ScheduledExecutorService dumper;
+
+    private final String type;
+    private final ObjectName objectName;
+    private final Map<String, Operation> operations = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private long lastDumpNanos = System.nanoTime();
+
+    public Metrics(String type, int region) {
+        this(type, "region=" + region);
+    }
+
+    public Metrics(String type) {
+        this(type, null);
+    }
+
+    private Metrics(String type, String key) {
+        this.type = key == null ? type : type + "," + key;
+        try {
+            this.objectName = new ObjectName("maze:type=" + this.type);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid metrics name " + this.type, e);
+        }
+    }
+
+    /**
+     * Starts the platform MBean server, which takes a few hundred milliseconds of CPU the first time. A
+     * player does this before it joins, so becoming a server later does not stall its pings.
+     */
+    public static void startJmx() {
+        ManagementFactory.getPlatformMBeanServer();
+    }
+
+    /**
+     * Exposes the metrics through JMX, replacing an earlier server of the same name in this JVM, and
+     * includes them in the periodic dump.
+     */
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(this.objectName)) {
+                server.unregisterMBean(this.objectName);
+            }
+            server.registerMBean(this, this.objectName);
+        } catch (Exception e) {
+            logger.warn("Registering metrics failed, name={}, error={}", this.objectName, e.getMessage());
+        }
+        registered.removeIf(metrics -> metrics.objectName.equals(this.objectName));
+        registered.add(this);
+        startDumper();
+    }
+
+    public void unregister() {
+        if (!registered.remove(this)) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (Exception e) {
+            logger.warn("Unregistering metrics failed, name={}, error={}", this.objectName, e.getMessage());
+        }
+    }
+
+    private static synchronized void startDumper() {
+        long dumpMillis = Long.getLong(Constants.METRICS_DUMP_MILLIS_PROPERTY, Constants.DEFAULT_METRICS_DUMP_MILLIS);
+        if (dumper != null || dumpMillis <= 0) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            for (Metrics metrics : registered) {
+                logger.info(metrics.dump());
+            }
+        }, dumpMillis, dumpMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the call and records its latency, or an error if it throws.
+     */
+    public <T, E extends Exception> T time(String operation, Call<T, E> call) throws E {
+        Operation stats = this.operation(operation);
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            stats.latency.record(System.nanoTime() - start);
+            return result;
+        } catch (Exception | Error e) {
+            stats.errors.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Records the latency until the future of the call completes, or an error if it fails.
+     */
+    public <T> CompletableFuture<T> timeAsync(String operation, Supplier<CompletableFuture<T>> call) {
+        Operation stats = this.operation(operation);
+        long start = System.nanoTime();
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            stats.errors.increment();
+            throw e;
+        }
+        return result.whenComplete((value, error) -> {
+            if (error == null) {
+                stats.latency.record(System.nanoTime() - start);
+            } else {
+                stats.errors.increment();
+            }
+        });
+    }
+
+    public <E extends Exception> void time(String operation, Action<E> action) throws E {
+        this.time(operation, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void increment(String counter) {
+        this.add(counter, 1);
+    }
+
+    public void add(String counter, long amount) {
+        this.counters.computeIfAbsent(counter, name -> new LongAdder()).add(amount);
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        this.gauges.put(name, value);
+    }
+
+    private Operation operation(String name) {
+        Operation operation = this.operations.get(name);
+        return operation != null ? operation : this.operations.computeIfAbsent(name, key -> new Operation());
+    }
+
+    /**
+     * @return gauges and counters, then count, rate since the last dump, errors and latencies of every
+     * operation called so far
+     */
+    public synchronized String dump() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - this.lastDumpNanos) / 1e9;
+        this.lastDumpNanos = now;
+        StringBuilder builder = new StringBuilder(this.type).append(':');
+        this.gauges.forEach((name, value) -> builder.append(' ').append(name).append('=').append(value.getAsLong()));
+        this.counters.forEach((name, value) -> builder.append(' ').append(name).append('=').append(value.sum()));
+        this.operations.forEach((name, operation) -> {
+            LatencyHistogram latency = operation.latency;
+            long count = latency.getCount();
+            builder.append(String.format(" | %s n=%d %.0f/s err=%d p50=%s p99=%s p99.9=%s max=%s", name, count,
+                    (count - operation.lastCount) / seconds, operation.errors.sum(),
+                    micros(latency.getPercentile(50)), micros(latency.getPercentile(99)),
+                    micros(latency.getPercentile(99.9)), micros(latency.getMax())));
+            operation.lastCount = count;
+        });
+        return builder.toString();
+    }
+
+    private static String micros(long nanos) {
+        return nanos >= 10_000_000 ? nanos / 1_000_000 + "ms" : nanos / 1000 + "us";
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        LongSupplier gauge = this.gauges.get(attribute);
+        if (gauge != null) {
+            return gauge.getAsLong();
+        }
+        LongAdder counter = this.counters.get(attribute);
+        if (counter != null) {
+            return counter.sum();
+        }
+        for (Map.Entry<String, Operation> entry : this.operations.entrySet()) {
+            String name = entry.getKey();
+            if (!attribute.startsWith(name)) {
+                continue;
+            }
+            LatencyHistogram latency = entry.getValue().latency;
+            switch (attribute.substring(name.length())) {
+                case "Count":
+                    return latency.getCount();
+                case "Errors":
+                    return entry.getValue().errors.sum();
+                case "MeanMicros":
+                    return (long) latency.getMean() / 1000;
+                case "P50Micros":
+                    return latency.getPercentile(50) / 1000;
+                case "P99Micros":
+                    return latency.getPercentile(99) / 1000;
+                case "P999Micros":
+                    return latency.getPercentile(99.9) / 1000;
+                case "MaxMicros":
+                    return latency.getMax() / 1000;
+                default:
+                    break;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, this.getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // left out, as the interface asks for
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    // no operations are advertised, a JMX client gets the exception the interface asks for
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    // operations and counters show up once they were first used
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : this.gauges.keySet()) {
+            attributes.add(longAttribute(name, "Current value"));
+        }
+        for (String name : this.counters.keySet()) {
+            attributes.add(longAttribute(name, "Count since start"));
+        }
+        for (String name : this.operations.keySet()) {
+            attributes.add(longAttribute(name + "Count", "Successful calls"));
+            attributes.add(longAttribute(name + "Errors", "Failed calls"));
+            attributes.add(longAttribute(name + "MeanMicros", "Mean latency"));
+            attributes.add(longAttribute(name + "P50Micros", "Median latency"));
+            attributes.add(longAttribute(name + "P99Micros", "99th percentile latency"));
+            attributes.add(longAttribute(name + "P999Micros", "99.9th percentile latency"));
+            attributes.add(longAttribute(name + "MaxMicros", "Largest latency"));
+        }
+        return new MBeanInfo(Metrics.class.getName(), "Metrics of " + this.type,
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    private static MBeanAttributeInfo longAttribute(String name, String description) {
+        return new MBeanAttributeInfo(name, "long", description, true, false, false);
+    }
+
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    public interface Action<E extends Exception> {
+        void run() throws E;
+    }
+
+    private static class Operation {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private long lastCount;
+    }
+}
@@ -0,0 +1,280 @@
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the IGameServer operations over NioProtocol frames. One selector thread does all socket IO,
+ * a small worker pool runs the operations, so the thread count does not grow with the player count.
+ * Updates complete asynchronously: a worker only submits them, and the thread that makes them durable
+ * and replicated hands the response back to the pool, so no worker waits on the disk or the backup.
+ */
+public class NioGameServer {
+
+    private static final Logger logger = Logger.getLogger(NioGameServer.class);
+
+    private final GameServer handler;
+    private final int port;
+    private final ExecutorService workers;
+    // connections with responses waiting for OP_WRITE, only the selector thread changes interest ops
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+
+    public NioGameServer(GameServer handler, int port, int workers) {
+        this.handler = handler;
+        this.port = port;
+        this.workers = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "nio-game-server-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static NioGameServer fromSystemProperties(GameServer handler) {
+        int workers = Integer.getInteger(Constants.NIO_WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        return new NioGameServer(handler, Constants.PRIMARY_SERVER_NIO_PORT, workers);
+    }
+
+    public void start() throws IOException {
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(this.port));
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.running = true;
+        Thread thread = new Thread(this::runSelector, "nio-game-server-selector");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("NIO game server listening on port {}", this.port);
+    }
+
+    public void stop() {
+        this.running = false;
+        this.workers.shutdownNow();
+        try {
+            this.selector.close();
+            this.serverChannel.close();
+        } catch (IOException e) {
+            logger.warn("Closing NIO game server failed! error={}", e.getMessage());
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        String host = System.getProperty("java.rmi.server.hostname");
+        try {
+            if (host == null) {
+                host = InetAddress.getLocalHost().getHostAddress();
+            }
+        } catch (IOException e) {
+            host = InetAddress.getLoopbackAddress().getHostAddress();
+        }
+        return new InetSocketAddress(host, this.port);
+    }
+
+    private void runSelector() {
+        while (this.running) {
+            try {
+                this.selector.select();
+                Connection pending;
+                while ((pending = this.pendingWrites.poll()) != null) {
+                    if (pending.key.isValid()) {
+                        pending.key.interestOps(pending.key.interestOps() | SelectionKey.OP_WRITE);
+                    }
+                }
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        this.accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (IOException e) {
+                        connection.close();
+                    }
+                }
+            } catch (Exception e) {
+                if (this.running) {
+                    logger.error("NIO selector failed! error={}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = this.serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+    }
+
+    /**
+     * @return the response body, completed once the operation is done
+     */
+    private CompletableFuture<NioProtocol.PayloadWriter> handle(byte[] payload) throws Exception {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte opcode = in.readByte();
+        switch (opcode) {
+            case NioProtocol.GET_GAME_DATA:
+                return completed(this.handler.getGameData()::writeTo);
+            case NioProtocol.ADD_PLAYER:
+                return this.handler.addPlayerAsync(BinaryCodec.readString(in), this.workers)
+                        .thenApply(data -> data::writeTo);
+            case NioProtocol.MOVE_PLAYER: {
+                String playerId = BinaryCodec.readString(in);
+                Direction direction = Direction.getDirectionByNumber(in.readByte());
+                return this.handler.movePlayerAsync(playerId, direction, this.workers)
+                        .thenApply(data -> data::writeTo);
+            }
+            case NioProtocol.GET_GAME_DATA_SINCE:
+                return completed(this.handler.getGameDataSince(BinaryCodec.readZigZagLong(in))::writeTo);
+            case NioProtocol.MOVE_PLAYER_SINCE: {
+                String playerId = BinaryCodec.readString(in);
+                Direction direction = Direction.getDirectionByNumber(in.readByte());
+                long version = BinaryCodec.readZigZagLong(in);
+                return this.handler.movePlayerSinceAsync(playerId, direction, version, this.workers)
+                        .thenApply(delta -> delta::writeTo);
+            }
+            case NioProtocol.CHANGE_BACKUP_SERVER:
+                this.handler.changeBackupServer(BinaryCodec.readString(in));
+                return completed(out -> {});
+            case NioProtocol.REMOVE_PLAYER:
+                return this.handler.removePlayerAsync(BinaryCodec.readString(in))
+                        .thenApply(ignored -> out -> {});
+            default:
+                throw new IOException("Unknown opcode " + opcode);
+        }
+    }
+
+    private static CompletableFuture<NioProtocol.PayloadWriter> completed(NioProtocol.PayloadWriter body) {
+        return CompletableFuture.completedFuture(body);
+    }
+
+    private static ByteBuffer ok(NioProtocol.PayloadWriter body) throws IOException {
+        return NioProtocol.frame(out -> {
+            out.writeByte(NioProtocol.STATUS_OK);
+            body.write(out);
+        });
+    }
+
+    private static ByteBuffer error(Throwable error) throws IOException {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        logger.warn("NIO request failed! error={}", cause);
+        return NioProtocol.frame(out -> {
+            out.writeByte(NioProtocol.STATUS_ERROR);
+            BinaryCodec.writeString(out, cause.toString());
+        });
+    }
+
+    private class Connection {
+
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ByteBuffer header = ByteBuffer.allocate(4);
+        private ByteBuffer body;
+        private final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            while (true) {
+                ByteBuffer target = this.body == null ? this.header : this.body;
+                int read = this.channel.read(target);
+                if (read < 0) {
+                    this.close();
+                    return;
+                }
+                if (target.hasRemaining()) {
+                    return;
+                }
+                if (this.body == null) {
+                    int size = this.header.getInt(0);
+                    NioProtocol.checkFrameSize(size);
+                    this.body = ByteBuffer.allocate(size);
+                    if (size > 0) {
+                        continue;
+                    }
+                }
+                byte[] payload = this.body.array();
+                this.header.clear();
+                this.body = null;
+                workers.execute(() -> this.dispatch(payload));
+            }
+        }
+
+        void dispatch(byte[] payload) {
+            CompletableFuture<NioProtocol.PayloadWriter> result;
+            try {
+                result = handle(payload);
+            } catch (Exception e) {
+                this.respond(null, e);
+                return;
+            }
+            // the response is encoded on a worker, not on the journal, replication or command loop thread
+            result.whenCompleteAsync(this::respond, workers);
+        }
+
+        void respond(NioProtocol.PayloadWriter body, Throwable error) {
+            try {
+                this.outbox.add(error == null ? ok(body) : error(error));
+                pendingWrites.add(this);
+                selector.wakeup();
+            } catch (IOException e) {
+                logger.warn("Encoding NIO response failed! error={}", e.getMessage());
+            }
+        }
+
+        void write() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = this.outbox.peek()) != null) {
+                this.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+                this.outbox.poll();
+            }
+            this.key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void close() {
+            this.key.cancel();
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+
+/**
+ * IGameServer over NioProtocol, so that Game can use the NIO transport in place of the RMI stub.
+ * Transport failures surface as RemoteException just like with RMI, including a call that gets no
+ * response within the call timeout.
+ */
+public class NioGameServerClient implements IGameServer {
+
+    private final InetSocketAddress address;
+    // calls the binary protocol does not carry, such as subscriptions with their callback stub
+    private final IGameServer rmiServer;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+
+    public NioGameServerClient(InetSocketAddress address, IGameServer rmiServer) throws IOException {
+        this(address, rmiServer, Integer.getInteger(Constants.NIO_CALL_TIMEOUT_MILLIS_PROPERTY,
+                Constants.DEFAULT_NIO_CALL_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * @param timeoutMillis how long connecting and each call may take before failing
+     */
+    public NioGameServerClient(InetSocketAddress address, IGameServer rmiServer, int timeoutMillis) throws IOException {
+        this.address = address;
+        this.rmiServer = rmiServer;
+        this.socket = new Socket();
+        this.socket.setTcpNoDelay(true);
+        // a blocking socket channel ignores the read timeout, a plain socket does not
+        this.socket.setSoTimeout(timeoutMillis);
+        this.socket.connect(address, timeoutMillis);
+        this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+        this.out = this.socket.getOutputStream();
+    }
+
+    public void close() {
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    private synchronized DataInputStream call(NioProtocol.PayloadWriter request) throws RemoteException {
+        try {
+            ByteBuffer frame = NioProtocol.frame(request);
+            this.out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            this.out.flush();
+            int size = this.in.readInt();
+            NioProtocol.checkFrameSize(size);
+            byte[] body = new byte[size];
+            this.in.readFully(body);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            if (in.readByte() == NioProtocol.STATUS_ERROR) {
+                throw new RemoteException("Game server error: " + BinaryCodec.readString(in));
+            }
+            return in;
+        } catch (RemoteException e) {
+            throw e;
+        } catch (IOException e) {
+            // after a timeout the late response would be taken for the next one, so the connection goes
+            this.close();
+            throw new RemoteException("NIO call to " + this.address + " failed", e);
+        }
+    }
+
+    private static GameStateData readGameData(DataInputStream in) throws RemoteException {
+        try {
+            GameStateData data = new GameStateData();
+            data.readFrom(in);
+            return data;
+        } catch (IOException e) {
+            throw new RemoteException("Malformed game data", e);
+        }
+    }
+
+    private static GameStateDelta readDelta(DataInputStream in) throws RemoteException {
+        try {
+            GameStateDelta delta = new GameStateDelta();
+            delta.readFrom(in);
+            return delta;
+        } catch (IOException e) {
+            throw new RemoteException("Malformed game data delta", e);
+        }
+    }
+
+    @Override
+    public GameStateData getGameData() throws RemoteException {
+        return readGameData(this.call(out -> out.writeByte(NioProtocol.GET_GAME_DATA)));
+    }
+
+    @Override
+    public GameStateData addPlayer(String playerId) throws RemoteException {
+        return readGameData(this.call(out -> {
+            out.writeByte(NioProtocol.ADD_PLAYER);
+            BinaryCodec.writeString(out, playerId);
+        }));
+    }
+
+    @Override
+    public GameStateData movePlayer(String playerId, Direction direction) throws RemoteException {
+        return readGameData(this.call(out -> {
+            out.writeByte(NioProtocol.MOVE_PLAYER);
+            BinaryCodec.writeString(out, playerId);
+            out.writeByte(direction.getNumber());
+        }));
+    }
+
+    @Override
+    public GameStateDelta getGameDataSince(long version) throws RemoteException {
+        return readDelta(this.call(out -> {
+            out.writeByte(NioProtocol.GET_GAME_DATA_SINCE);
+            BinaryCodec.writeZigZagLong(out, version);
+        }));
+    }
+
+    @Override
+    public GameStateDelta movePlayerSince(String playerId, Direction direction, long version) throws RemoteException {
+        return readDelta(this.call(out -> {
+            out.writeByte(NioProtocol.MOVE_PLAYER_SINCE);
+            BinaryCodec.writeString(out, playerId);
+            out.writeByte(direction.getNumber());
+            BinaryCodec.writeZigZagLong(out, version);
+        }));
+    }
+
+    @Override
+    public void changeBackupServer(String backupServer) throws RemoteException {
+        this.call(out -> {
+            out.writeByte(NioProtocol.CHANGE_BACKUP_SERVER);
+            BinaryCodec.writeString(out, backupServer);
+        });
+    }
+
+    @Override
+    public void removePlayer(String playerId) throws RemoteException {
+        this.call(out -> {
+            out.writeByte(NioProtocol.REMOVE_PLAYER);
+            BinaryCodec.writeString(out, playerId);
+        });
+    }
+
+    @Override
+    public void subscribe(String playerId, IGameSubscriber subscriber, long version) throws RemoteException {
+        this.rmiServer.subscribe(playerId, subscriber, version);
+    }
+
+    @Override
+    public void unsubscribe(String playerId) throws RemoteException {
+        this.rmiServer.unsubscribe(playerId);
+    }
+
+    @Override
+    public boolean acceptPlayer(String playerId, Position position, int points) throws RemoteException {
+        return this.rmiServer.acceptPlayer(playerId, position, points);
+    }
+
+    @Override
+    public InetSocketAddress getNioAddress() {
+        return this.address;
+    }
+}
@@ -0,0 +1,51 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Frames are a 4 byte length followed by the payload.
+ * A request payload is an opcode and its arguments, a response payload is a status and the result.
+ * Each connection carries one outstanding request at a time.
+ */
+public final class NioProtocol {
+
+    private NioProtocol() {
+        // this should not happen
+    }
+
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    public static final byte GET_GAME_DATA = 1;
+    public static final byte ADD_PLAYER = 2;
+    public static final byte MOVE_PLAYER = 3;
+    public static final byte GET_GAME_DATA_SINCE = 4;
+    public static final byte MOVE_PLAYER_SINCE = 5;
+    public static final byte CHANGE_BACKUP_SERVER = 6;
+    public static final byte REMOVE_PLAYER = 7;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+
+    public interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    public static ByteBuffer frame(PayloadWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        // placeholder for the length
+        out.writeInt(0);
+        writer.write(out);
+        out.flush();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        buffer.putInt(0, buffer.remaining() - 4);
+        return buffer;
+    }
+
+    public static void checkFrameSize(int size) throws IOException {
+        if (size < 0 || size > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame size " + size);
+        }
+    }
+}
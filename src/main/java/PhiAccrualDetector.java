@@ -0,0 +1,88 @@
+/**
+ * Phi accrual failure detector for one player, after Hayashibara et al. It keeps a sliding window of the
+ * intervals between the player's pings. The suspicion level phi of a silence is -log10 of the probability
+ * that a ping comes even later, given the normal distribution fitted to the window. A player with steady
+ * pings is suspected soon after a missing ping, one with irregular pings is given more time.
+ * Not thread safe, the owning Heartbeat serializes access.
+ */
+public class PhiAccrualDetector {
+
+	private final long[] intervals;
+	private int count;
+	private int next;
+	private double sum;
+	private double squareSum;
+
+	public PhiAccrualDetector(int windowSize) {
+		this.intervals = new long[windowSize];
+	}
+
+	public void record(long intervalMillis) {
+		if (this.count == this.intervals.length) {
+			long oldest = this.intervals[this.next];
+			this.sum -= oldest;
+			this.squareSum -= (double) oldest * oldest;
+		} else {
+			this.count++;
+		}
+		this.intervals[this.next] = intervalMillis;
+		this.next = (this.next + 1) % this.intervals.length;
+		this.sum += intervalMillis;
+		this.squareSum += (double) intervalMillis * intervalMillis;
+	}
+
+	public int getSampleCount() {
+		return count;
+	}
+
+	public double getMean() {
+		// until a few pings arrived the expected ping interval stands in for the learned one
+		return this.count < 2 ? Constants.HEARTBEAT_INTERVAL_MILLIS : this.sum / this.count;
+	}
+
+	public double getStdDeviation() {
+		if (this.count < 2) {
+			return Constants.HEARTBEAT_INTERVAL_MILLIS / 4.0;
+		}
+		double mean = this.sum / this.count;
+		return Math.sqrt(Math.max(0, this.squareSum / this.count - mean * mean));
+	}
+
+	public double phi(long elapsedMillis, FailureDetectorPolicy policy) {
+		double mean = this.getMean() + policy.getAcceptablePauseMillis();
+		double deviation = Math.max(this.getStdDeviation(), policy.getMinStdDeviationMillis());
+		double y = (elapsedMillis - mean) / deviation;
+		// logistic approximation of the normal distribution
+		double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+		if (elapsedMillis > mean) {
+			return -Math.log10(e / (1.0 + e));
+		}
+		return -Math.log10(1.0 - 1.0 / (1.0 + e));
+	}
+
+	/**
+	 * @return the silence after which phi reaches the threshold of the policy
+	 */
+	public long timeoutMillis(FailureDetectorPolicy policy) {
+		double mean = this.getMean() + policy.getAcceptablePauseMillis();
+		double deviation = Math.max(this.getStdDeviation(), policy.getMinStdDeviationMillis());
+		long timeout = (long) Math.ceil(mean + policy.getThresholdDeviations() * deviation);
+		return Math.min(timeout, Constants.HEARTBEAT_MAX_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Inverts the approximation used by phi, y * (1.5976 + 0.070566 * y^2) = ln((1 - p) / p) with
+	 * p = 10^-phi, which has a single real root.
+	 */
+	static double deviationsForPhi(double phi) {
+		double p = Math.pow(10, -phi);
+		double a = 0.070566;
+		double c = 1.5976;
+		double d = Math.log((1 - p) / p);
+		// depressed cubic y^3 + c/a y - d/a = 0, solved with Cardano's formula
+		double linear = c / a;
+		double constant = -d / a;
+		double root = Math.sqrt(constant * constant / 4 + linear * linear * linear / 27);
+		return Math.cbrt(-constant / 2 + root) + Math.cbrt(-constant / 2 - root);
+	}
+}
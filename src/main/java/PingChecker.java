@@ -1,17 +1,17 @@
 import java.rmi.RemoteException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class PingChecker extends Thread {
 
 	private static final Logger logger = Logger.getLogger(PingChecker.class);
 
 	private final ITracker tracker;
-	private final ConcurrentHashMap<String, Long> map;
+	private final HeartbeatWheel wheel;
+	private final FailureDetectorMetrics metrics;
 
-	public PingChecker(ITracker tracker, ConcurrentHashMap<String, Long> map) {
-		this.map = map;
+	public PingChecker(ITracker tracker, HeartbeatWheel wheel, FailureDetectorMetrics metrics) {
+		this.wheel = wheel;
 		this.tracker = tracker;
+		this.metrics = metrics;
 	}
 
 	@Override
@@ -19,23 +19,31 @@ public class PingChecker extends Thread {
 		try {
 			while (true) {
 				long cur = System.currentTimeMillis();
-				for (Map.Entry<String, Long> entry : map.entrySet()) {
-					long elapsedTime = cur - entry.getValue();
-					if (elapsedTime > 1300) {
-						logger.info("Time exceeds, time=" + elapsedTime);
-						String playerId = entry.getKey();
-						try {
-							logger.info("Player " + playerId + " crashed");
-							this.tracker.quit(playerId);
-						} catch (RemoteException e) {
-							e.printStackTrace();
-						}
+				for (Heartbeat heartbeat : this.wheel.advance(cur)) {
+					long elapsedTime = cur - heartbeat.getLastSeen();
+					long deadline = heartbeat.getDeadline();
+					FailureDetectorPolicy policy = heartbeat.getPolicy();
+					this.metrics.recordDetection(heartbeat.getPlayerId(), policy.getRole(), elapsedTime,
+							cur - deadline);
+					if (logger.isInfoEnabled()) {
+						logger.info("Time exceeds, time={}, timeout={}, phi={}, policy={}", elapsedTime,
+								deadline - heartbeat.getLastSeen(),
+								String.format("%.1f", heartbeat.phi(cur)), policy);
+						logger.info(this.metrics.toString());
+					}
+					String playerId = heartbeat.getPlayerId();
+					try {
+						logger.info("Player {} crashed", playerId);
+						this.tracker.quit(playerId);
+					} catch (RemoteException e) {
+						e.printStackTrace();
+						this.wheel.retry(heartbeat);
 					}
 				}
-				Thread.sleep(100);
+				Thread.sleep(this.wheel.getTickMillis());
 			}
 		} catch (InterruptedException e) {
-			logger.warn("Client exception: " + e.toString());
+			logger.warn("Client exception: {}", e);
 			e.printStackTrace();
 		}
 
@@ -0,0 +1,87 @@
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Answer of the tracker to a ping. Besides the role of the player it carries the epoch of the server
+ * configuration, which changes whenever a primary or backup server is replaced or a primary is ready to
+ * serve. The primary servers of all regions are only included if the player has not seen the epoch yet.
+ */
+public class PingReply implements Externalizable {
+
+    private static final long serialVersionUID = 3318645271160594837L;
+
+    private ClientType type;
+    private long epoch;
+    // null if the player already knows the epoch, a region without a ready primary has a null entry
+    private IGameServer[] primaryServers;
+    // null together with the primary servers
+    private IReadReplica[] readReplicas;
+
+    public PingReply() {}
+
+    public PingReply(ClientType type, long epoch, IGameServer[] primaryServers, IReadReplica[] readReplicas) {
+        this.type = type;
+        this.epoch = epoch;
+        this.primaryServers = primaryServers;
+        this.readReplicas = readReplicas;
+    }
+
+    public ClientType getType() {
+        return type;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public IGameServer[] getPrimaryServers() {
+        return primaryServers;
+    }
+
+    public IReadReplica[] getReadReplicas() {
+        return readReplicas;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        BinaryCodec.writeFormatVersion(out);
+        BinaryCodec.writeVarInt(out, this.type.ordinal());
+        BinaryCodec.writeVarLong(out, this.epoch);
+        // stubs are only written with object serialization, which replaces exported servers by their stubs
+        BinaryCodec.writeVarInt(out, this.primaryServers == null ? 0 : this.primaryServers.length + 1);
+        if (this.primaryServers != null) {
+            for (IGameServer server : this.primaryServers) {
+                out.writeObject(server);
+            }
+        }
+        BinaryCodec.writeVarInt(out, this.readReplicas == null ? 0 : this.readReplicas.length + 1);
+        if (this.readReplicas != null) {
+            for (IReadReplica replica : this.readReplicas) {
+                out.writeObject(replica);
+            }
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        BinaryCodec.readFormatVersion(in);
+        this.type = ClientType.values()[BinaryCodec.readVarInt(in)];
+        this.epoch = BinaryCodec.readVarLong(in);
+        int servers = BinaryCodec.readVarInt(in) - 1;
+        if (servers >= 0) {
+            this.primaryServers = new IGameServer[servers];
+            for (int i = 0; i < servers; i++) {
+                this.primaryServers[i] = (IGameServer) in.readObject();
+            }
+        }
+        int replicas = BinaryCodec.readVarInt(in) - 1;
+        if (replicas >= 0) {
+            this.readReplicas = new IReadReplica[replicas];
+            for (int i = 0; i < replicas; i++) {
+                this.readReplicas[i] = (IReadReplica) in.readObject();
+            }
+        }
+    }
+}
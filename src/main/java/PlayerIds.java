@@ -0,0 +1,13 @@
+/**
+ * Ids of the simulated players of the benchmarks and the load generator. They have two letters like the
+ * ids of real players, with the number of the round appended beyond 676 players.
+ */
+public class PlayerIds {
+
+    private PlayerIds() {
+    }
+
+    public static String of(int i) {
+        return String.valueOf((char) ('a' + i / 26 % 26)) + (char) ('a' + i % 26) + (i >= 676 ? i / 676 : "");
+    }
+}
@@ -1,6 +1,11 @@
-import java.io.Serializable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
-public class PlayerInfo implements Serializable, Comparable<PlayerInfo> {
+public class PlayerInfo implements Externalizable, Comparable<PlayerInfo> {
 
     private static final long serialVersionUID = -1017570753987964370L;
 
@@ -8,11 +13,19 @@ public class PlayerInfo implements Serializable, Comparable<PlayerInfo> {
     private int points = 0;
     private Position position;
 
+    public PlayerInfo() {}
+
     public PlayerInfo(String id, Position position) {
         this.id = id;
         this.position = position;
     }
 
+    public PlayerInfo(PlayerInfo that) {
+        this.id = that.getId();
+        this.points = that.getPoints();
+        this.position = that.getPosition();
+    }
+
     public String getId() {
         return id;
     }
@@ -41,6 +54,31 @@ public class PlayerInfo implements Serializable, Comparable<PlayerInfo> {
         this.points++;
     }
 
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        BinaryCodec.writeFormatVersion(out);
+        this.writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        BinaryCodec.readFormatVersion(in);
+        this.readFrom(in, 0);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        BinaryCodec.writeString(out, this.id);
+        BinaryCodec.writeVarInt(out, this.points);
+        BinaryCodec.writePosition(out, this.position);
+    }
+
+    // the position is resolved against the grid of the enclosing game data
+    public void readFrom(DataInput in, int gridSize) throws IOException {
+        this.id = BinaryCodec.readString(in);
+        this.points = BinaryCodec.readVarInt(in);
+        this.position = BinaryCodec.readPosition(in, gridSize);
+    }
+
     @Override
     public String toString() {
         return "PlayerInfo{" +
@@ -1,72 +1,111 @@
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-public class Position implements Serializable {
+public class Position implements Externalizable {
 
     private static final long serialVersionUID = 768016840645708589L;
 
+    // canonical positions per grid size, indexed by x * gridSize + y
+    private static final Map<Integer, Position[]> TABLES = new ConcurrentHashMap<>();
+    // table of the grid size looked up last, its length gridSize * gridSize identifies the grid size
+    private static volatile Position[] lastTable = new Position[0];
+
     private int x;
     private int y;
+    private transient int hash;
+    // neighbour per Direction ordinal, only set on canonical positions
+    private transient Position[] neighbours;
+
+    // only for deserialization, positions are not modified after construction
+    public Position() {}
 
     public Position(int x, int y) {
         this.x = x;
         this.y = y;
+        this.hash = 31 * x + y;
     }
 
     public Position(Position that) {
-        this.x = that.getX();
-        this.y = that.getY();
+        this(that.getX(), that.getY());
     }
 
-    public int getX() {
-        return x;
+    /**
+     * @return the canonical instance of the grid, or a new position if it lies outside of the grid
+     */
+    public static Position of(int gridSize, int x, int y) {
+        if (x < 0 || y < 0 || x >= gridSize || y >= gridSize) {
+            return new Position(x, y);
+        }
+        return table(gridSize)[x * gridSize + y];
     }
 
-    public void setX(int x) {
-        this.x = x;
+    public static Position ofCell(int gridSize, int cell) {
+        return table(gridSize)[cell];
     }
 
-    public int getY() {
-        return y;
+    public static Position canonical(int gridSize, Position position) {
+        return position == null ? null : of(gridSize, position.getX(), position.getY());
     }
 
-    public void setY(int y) {
-        this.y = y;
+    private static Position[] table(int gridSize) {
+        Position[] table = lastTable;
+        if (table.length == gridSize * gridSize) {
+            return table;
+        }
+        // the map boxes the grid size, which allocates for grids above 127
+        table = TABLES.computeIfAbsent(gridSize, Position::buildTable);
+        lastTable = table;
+        return table;
+    }
+
+    private static Position[] buildTable(int gridSize) {
+        Position[] table = new Position[gridSize * gridSize];
+        for (int x = 0; x < gridSize; x++) {
+            for (int y = 0; y < gridSize; y++) {
+                table[x * gridSize + y] = new Position(x, y);
+            }
+        }
+        Direction[] directions = Direction.values();
+        for (Position position : table) {
+            Position[] neighbours = new Position[directions.length];
+            for (Direction direction : directions) {
+                int nx = position.x + direction.getDeltaX();
+                int ny = position.y + direction.getDeltaY();
+                boolean inside = nx >= 0 && ny >= 0 && nx < gridSize && ny < gridSize;
+                // off-grid neighbours are plain instances so that isValid still rejects them
+                neighbours[direction.ordinal()] = inside ? table[nx * gridSize + ny] : new Position(nx, ny);
+            }
+            position.neighbours = neighbours;
+        }
+        return table;
     }
 
-    public void moveX(int x) {
-        this.x = this.x + x;
+    public int getX() {
+        return x;
     }
 
-    public void moveY(int y) {
-        this.y = this.y + y;
+    public int getY() {
+        return y;
     }
 
-    public String getPositionKey() {
-        return this.x + "-" + this.y;
+    public int getCellIndex(int gridSize) {
+        return this.x * gridSize + this.y;
     }
 
     public Position movePosition(Direction direction) {
-        Position newPosition = new Position(this);
-        switch (direction) {
-            case WEST:
-                newPosition.moveX(-1);
-                break;
-            case SOUTH:
-                newPosition.moveY(1);
-                break;
-            case EAST:
-                newPosition.moveX(1);
-                break;
-            case NORTH:
-                newPosition.moveY(-1);
+        if (this.neighbours != null) {
+            return this.neighbours[direction.ordinal()];
         }
-        return newPosition;
+        return new Position(this.x + direction.getDeltaX(), this.y + direction.getDeltaY());
     }
 
     public boolean isValid(int gridSize) {
@@ -83,21 +122,33 @@ public class Position implements Serializable {
 
         List<Position> positions = new ArrayList<>(length);
         for (int i = 0; i < length; i++) {
-            positions.add(new Position(xPositions.get(i), yPositions.get(i)));
+            positions.add(Position.of(gridSize, xPositions.get(i), yPositions.get(i)));
         }
         return positions;
     }
 
     public static List<Position> generateAllPositions(int gridSize) {
         List<Position> positions = new ArrayList<>(gridSize * gridSize);
-        for (int i = 0; i < gridSize; i++) {
-            for (int j = 0; j < gridSize; j++) {
-                positions.add(new Position(i, j));
-            }
-        }
+        Collections.addAll(positions, table(gridSize));
         return positions;
     }
 
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        BinaryCodec.writeFormatVersion(out);
+        BinaryCodec.writePosition(out, this);
+    }
+
+    // a position on its own does not know its grid, so it is not canonical, game data resolves its positions
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        BinaryCodec.readFormatVersion(in);
+        Position position = BinaryCodec.readPosition(in, 0);
+        this.x = position.getX();
+        this.y = position.getY();
+        this.hash = 31 * this.x + this.y;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -108,7 +159,7 @@ public class Position implements Serializable {
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        return hash;
     }
 
     @Override
@@ -0,0 +1,124 @@
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Read replica hosted by a player. It subscribes to the updates of the primary server like a game client
+ * and replays them into a game state of its own, which answers the refreshes of other players.
+ */
+public class ReadReplica implements IReadReplica, IGameSubscriber {
+
+    private static final Logger logger = Logger.getLogger(ReadReplica.class);
+
+    private final String subscriptionId;
+    private final int gridSize;
+    // subscribing is a remote call, it must not hold up the ping thread that notices a new primary
+    private final ExecutorService follower;
+    private IGameSubscriber subscriber = this;
+    private volatile IGameServer primaryServer;
+    private volatile GameState replica;
+
+    public ReadReplica(String playerId, int gridSize) {
+        this.subscriptionId = Constants.READ_REPLICA_SUBSCRIPTION_PREFIX + playerId;
+        this.gridSize = gridSize;
+        this.follower = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "read-replica-follower");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Exports the replica, follows the current primary server and announces the replica to the tracker.
+     */
+    public void initialize(String playerId, Registry registry, ITracker tracker) {
+        try {
+            IReadReplica stub = (IReadReplica) UnicastRemoteObject.exportObject(this, 0);
+            this.subscriber = (IGameSubscriber) stub;
+            this.follow((IGameServer) registry.lookup(Constants.PRIMARY_GAME_SERVER_STUB_NAME));
+            tracker.registerReadReplica(playerId, stub);
+            logger.info("Read replica ready!");
+        } catch (Exception e) {
+            logger.error("Read replica exception: {}", e);
+            e.printStackTrace();
+        }
+    }
+
+    public void follow(IGameServer primaryServer) {
+        if (primaryServer == null || primaryServer.equals(this.primaryServer)) {
+            return;
+        }
+        this.primaryServer = primaryServer;
+        this.follower.execute(() -> {
+            try {
+                GameState replica = this.replica;
+                // a primary with another history answers an unknown version with a snapshot
+                primaryServer.subscribe(this.subscriptionId, this.subscriber, replica == null ? -1 : replica.getVersion());
+            } catch (Exception e) {
+                logger.warn("Following primary server failed! error={}", e.getMessage());
+            }
+        });
+    }
+
+    public void close() {
+        this.follower.shutdownNow();
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            logger.warn("Read replica was not exported");
+        }
+        IGameServer primaryServer = this.primaryServer;
+        try {
+            if (primaryServer != null) {
+                primaryServer.unsubscribe(this.subscriptionId);
+            }
+        } catch (RemoteException e) {
+            logger.warn("Unsubscribing read replica failed! error={}", e.getMessage());
+        }
+    }
+
+    public long getVersion() {
+        GameState replica = this.replica;
+        return replica == null ? -1 : replica.getVersion();
+    }
+
+    @Override
+    public synchronized void onGameUpdate(GameStateDelta delta) throws RemoteException {
+        GameState replica = this.replica;
+        if (delta.isSnapshot()) {
+            this.replica = new GameState(delta.getSnapshot(), this.gridSize);
+            return;
+        }
+        if (replica == null || !replica.applyChanges(delta.getChanges())) {
+            logger.warn("Read replica missed updates, fetching full game data");
+            this.replica = new GameState(this.primaryServer.getGameData(), this.gridSize);
+            return;
+        }
+        replica.setPrimaryServer(delta.getPrimaryServer());
+        replica.setBackupServer(delta.getBackupServer());
+    }
+
+    @Override
+    public GameStateDelta getGameDataSince(long version) throws RemoteException {
+        return readSince(this.replica, version);
+    }
+
+    /**
+     * Answers a refresh from a copy of the game state. A caller that has seen newer data than the copy gets
+     * an empty delta at the version of the copy, and reads from the primary server instead.
+     */
+    static GameStateDelta readSince(GameState replica, long version) throws RemoteException {
+        if (replica == null) {
+            throw new RemoteException("Read replica has no game data yet");
+        }
+        long replicaVersion = replica.getVersion();
+        if (version > replicaVersion) {
+            return GameStateDelta.ofChanges(replica, replicaVersion, Collections.emptyList());
+        }
+        return GameStateDelta.since(replica, version);
+    }
+}
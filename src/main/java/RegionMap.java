@@ -0,0 +1,67 @@
+/**
+ * Splits the grid into vertical strips of whole columns, region r owning the columns from getFromX(r)
+ * up to but excluding getToX(r). Each region is served by its own primary and backup server.
+ */
+public class RegionMap {
+
+    private final int gridSize;
+    private final int regionCount;
+    private final int[] columnRegions;
+
+    public RegionMap(int gridSize, int regionCount) {
+        this.gridSize = gridSize;
+        this.regionCount = Math.max(1, Math.min(regionCount, gridSize));
+        this.columnRegions = new int[gridSize];
+        for (int region = 0; region < this.regionCount; region++) {
+            for (int x = this.getFromX(region); x < this.getToX(region); x++) {
+                this.columnRegions[x] = region;
+            }
+        }
+    }
+
+    public static RegionMap of(GameMeta meta) {
+        return new RegionMap(meta.getGridSize(), meta.getRegionCount());
+    }
+
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    public boolean isSharded() {
+        return this.regionCount > 1;
+    }
+
+    public int getFromX(int region) {
+        return region * this.gridSize / this.regionCount;
+    }
+
+    public int getToX(int region) {
+        return (region + 1) * this.gridSize / this.regionCount;
+    }
+
+    /**
+     * @return the region owning the position, -1 if it is off the grid
+     */
+    public int regionOf(Position position) {
+        if (position == null || !position.isValid(this.gridSize)) {
+            return -1;
+        }
+        return this.columnRegions[position.getX()];
+    }
+
+    public int getTreasureSize(int region, int treasureSize) {
+        // the remainder goes to the first regions
+        return treasureSize / this.regionCount + (region < treasureSize % this.regionCount ? 1 : 0);
+    }
+
+    // region 0 keeps the names of the unsharded game, so a single region behaves as before
+    public static String primaryStubName(int region) {
+        return region == 0 ? Constants.PRIMARY_GAME_SERVER_STUB_NAME
+                : Constants.PRIMARY_GAME_SERVER_STUB_NAME + "-" + region;
+    }
+
+    public static String backupStubName(int region) {
+        return region == 0 ? Constants.BACKUP_GAME_SERVER_STUB_NAME
+                : Constants.BACKUP_GAME_SERVER_STUB_NAME + "-" + region;
+    }
+}
@@ -0,0 +1,7 @@
+public enum ReplicationMode {
+    // a mutation returns once the backup has applied it, mutations made while a batch is in flight
+    // are shipped together as the next batch
+    SYNC,
+    // a mutation returns once queued, a background thread ships batches to the backup
+    ASYNC
+}
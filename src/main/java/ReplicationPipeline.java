@@ -0,0 +1,219 @@
+import java.rmi.RemoteException;
+import java.rmi.registry.Registry;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class ReplicationPipeline {
+
+    private static final Logger logger = Logger.getLogger(ReplicationPipeline.class);
+
+    private final Registry registry;
+    private final String backupStubName;
+    private final ReplicationMode mode;
+    private final long maxLag;
+    // guards the replication cursor and its waiters, the remote calls of a batch are made without it
+    private final Object shipLock = new Object();
+    private final VersionWaiters waiters = new VersionWaiters();
+    private volatile GameState gameState;
+    private volatile IBackupServer backupServer;
+    // last version acknowledged by the backup server, -1 if the backup needs a full snapshot
+    private volatile long replicatedVersion = -1;
+    // counts backup changes, a batch sent to an earlier backup does not move the cursor
+    private long backupEpoch;
+    // only written under the ship lock
+    private volatile long shippedBatches;
+    private boolean pending;
+    private Thread worker;
+
+    public ReplicationPipeline(Registry registry, String backupStubName, ReplicationMode mode, long maxLag) {
+        this.registry = registry;
+        this.backupStubName = backupStubName;
+        this.mode = mode;
+        this.maxLag = maxLag;
+    }
+
+    public static ReplicationPipeline fromSystemProperties(Registry registry, String backupStubName) {
+        ReplicationMode mode = ReplicationMode.valueOf(System.getProperty(Constants.REPLICATION_MODE_PROPERTY,
+                ReplicationMode.SYNC.name()).toUpperCase());
+        long maxLag = Long.getLong(Constants.REPLICATION_MAX_LAG_PROPERTY, Constants.DEFAULT_REPLICATION_MAX_LAG);
+        return new ReplicationPipeline(registry, backupStubName, mode, maxLag);
+    }
+
+    public ReplicationMode getMode() {
+        return mode;
+    }
+
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    /**
+     * @return the last version the backup server has acknowledged, -1 if it still needs a snapshot
+     */
+    public long getReplicatedVersion() {
+        return replicatedVersion;
+    }
+
+    /**
+     * @return the batches the backup has acknowledged, fewer than replicate calls when callers joined a
+     *      batch already in flight
+     */
+    public long getShippedBatches() {
+        return shippedBatches;
+    }
+
+    public synchronized void start(GameState gameState) {
+        this.gameState = gameState;
+        if (this.worker == null) {
+            this.worker = new Thread(this::runWorker, "replication-pipeline");
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+    }
+
+    public IBackupServer lookupBackupServer() {
+        IBackupServer backup = this.backupServer;
+        if (backup != null || this.registry == null) {
+            // without a registry the server runs standalone and replicates nowhere
+            return backup;
+        }
+        try {
+            backup = (IBackupServer) this.registry.lookup(this.backupStubName);
+            this.backupServer = backup;
+            logger.info("Backup server found!");
+        } catch (Exception e) {
+            logger.warn("Backup server not found!");
+        }
+        return backup;
+    }
+
+    public void backupChanged() {
+        synchronized (this.shipLock) {
+            // the new backup is looked up again and starts from a snapshot
+            this.backupServer = null;
+            this.replicatedVersion = -1;
+            this.backupEpoch++;
+        }
+    }
+
+    /**
+     * Replicates everything up to the current version. In sync mode this returns once the backup has
+     * applied it, callers that arrive while a batch is in flight share the next one. In async mode this
+     * only waits while the backup lags more than maxLag versions behind.
+     */
+    public void replicate() {
+        this.replicateAsync().join();
+    }
+
+    /**
+     * @return completes when replicate would return, on the pipeline thread unless it is done already
+     */
+    public CompletableFuture<Void> replicateAsync() {
+        long version = this.gameState.getVersion();
+        long target = this.mode == ReplicationMode.SYNC ? version : version - this.maxLag;
+        CompletableFuture<Void> replicated;
+        synchronized (this.shipLock) {
+            replicated = this.isCovered(target) ? CompletableFuture.completedFuture(null) : this.waiters.add(target);
+        }
+        this.wakeWorker();
+        return replicated;
+    }
+
+    private boolean isCovered(long target) {
+        long acked = this.replicatedVersion;
+        if (this.mode == ReplicationMode.ASYNC && (this.backupServer == null || acked < 0)) {
+            // a backup that is missing or being resynced does not hold up async callers
+            return true;
+        }
+        return acked >= target;
+    }
+
+    private synchronized void wakeWorker() {
+        this.pending = true;
+        this.notifyAll();
+    }
+
+    private void runWorker() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (!this.pending) {
+                        this.wait();
+                    }
+                } catch (InterruptedException e) {
+                    logger.warn("Replication pipeline interrupted");
+                    return;
+                }
+                this.pending = false;
+            }
+            // everything queued so far goes out as one batch
+            this.ship();
+        }
+    }
+
+    /**
+     * Ships the changes after the cursor as one batch, then completes the callers it covered. Only the
+     * pipeline thread ships, so batches reach the backup in order.
+     */
+    private void ship() {
+        long epoch;
+        long fromVersion;
+        List<StateChange> changes;
+        synchronized (this.shipLock) {
+            epoch = this.backupEpoch;
+            fromVersion = this.replicatedVersion;
+            changes = fromVersion < 0 ? null : this.gameState.getChangesSince(fromVersion);
+        }
+        long acked = -1;
+        try {
+            acked = this.send(fromVersion, changes);
+        } catch (Exception e) {
+            logger.warn("Backup game data failed! error={}", e.getMessage());
+        }
+        List<CompletableFuture<Void>> reached;
+        boolean behind;
+        synchronized (this.shipLock) {
+            if (epoch == this.backupEpoch) {
+                if (acked > fromVersion) {
+                    this.shippedBatches++;
+                }
+                this.replicatedVersion = acked;
+                if (acked < 0) {
+                    // will lookup backup server and send a snapshot next time
+                    this.backupServer = null;
+                }
+            }
+            // without a backup there is nothing to wait for, as before the backup was lost
+            reached = acked < 0 ? this.waiters.takeAll() : this.waiters.takeUpTo(this.replicatedVersion);
+            behind = !this.waiters.isEmpty();
+        }
+        VersionWaiters.complete(reached);
+        if (behind) {
+            // changes made during the batch, or a batch that went to a backup replaced meanwhile
+            this.wakeWorker();
+        }
+    }
+    /**
+     * @return the version the backup acknowledged, -1 if there is no backup server
+     */
+    private long send(long fromVersion, List<StateChange> changes) throws RemoteException {
+        IBackupServer backup = this.lookupBackupServer();
+        if (backup == null) {
+            return -1;
+        }
+        if (changes != null) {
+            if (changes.isEmpty()) {
+                return fromVersion;
+            }
+            long lastSequence = changes.get(changes.size() - 1).getSequence();
+            long backupVersion = backup.applyChanges(changes);
+            if (backupVersion == lastSequence) {
+                return backupVersion;
+            }
+            logger.info("Backup is out of sync, sending snapshot, backupVersion={}", backupVersion);
+        }
+        GameStateData snapshot = this.gameState.exportGameData();
+        backup.updateGameData(snapshot);
+        return snapshot.getVersion();
+    }
+}
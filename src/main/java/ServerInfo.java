@@ -1,6 +1,11 @@
-import java.io.Serializable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
-public class ServerInfo implements Serializable {
+public class ServerInfo implements Externalizable {
 
     private static final long serialVersionUID = 5923263686128663841L;
 
@@ -34,4 +39,26 @@ public class ServerInfo implements Serializable {
     public void setBackupServer(String backupServer) {
         this.backupServer = backupServer;
     }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        BinaryCodec.writeFormatVersion(out);
+        this.writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        BinaryCodec.readFormatVersion(in);
+        this.readFrom(in);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        BinaryCodec.writeString(out, this.primaryServer);
+        BinaryCodec.writeString(out, this.backupServer);
+    }
+
+    public void readFrom(DataInput in) throws IOException {
+        this.primaryServer = BinaryCodec.readString(in);
+        this.backupServer = BinaryCodec.readString(in);
+    }
 }
@@ -0,0 +1,208 @@
+import java.net.InetSocketAddress;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side view of a sharded grid. A move goes to the primary of the region the player stands in,
+ * the data returned to the game is merged from the last data seen of every region.
+ */
+public class ShardedGameServerClient implements IGameServer {
+
+    private static final Logger logger = Logger.getLogger(ShardedGameServerClient.class);
+
+    // merged views get increasing versions across client instances, so a newer view is never dropped
+    private static final AtomicLong viewVersions = new AtomicLong();
+
+    private final Registry registry;
+    private final RegionMap regionMap;
+    private final IGameServer[] servers;
+    private final GameStateData[] regionData;
+
+    /**
+     * @param knownServers primaries announced by the tracker, may be null, missing ones are looked up
+     */
+    public ShardedGameServerClient(Registry registry, RegionMap regionMap, IGameServer[] knownServers) {
+        this.registry = registry;
+        this.regionMap = regionMap;
+        this.servers = new IGameServer[regionMap.getRegionCount()];
+        this.regionData = new GameStateData[regionMap.getRegionCount()];
+        if (knownServers != null && knownServers.length == this.servers.length) {
+            System.arraycopy(knownServers, 0, this.servers, 0, this.servers.length);
+        }
+    }
+
+    /**
+     * Looks up the primaries of all regions.
+     * @throws RemoteException if a region has no primary at the moment
+     */
+    public void lookupRegionServers() throws RemoteException {
+        for (int region = 0; region < this.servers.length; region++) {
+            this.server(region);
+        }
+    }
+
+    private IGameServer server(int region) throws RemoteException {
+        IGameServer server = this.servers[region];
+        if (server == null) {
+            try {
+                server = (IGameServer) this.registry.lookup(RegionMap.primaryStubName(region));
+            } catch (NotBoundException e) {
+                throw new RemoteException("No primary server for region " + region);
+            }
+            this.servers[region] = server;
+        }
+        return server;
+    }
+
+    private RemoteException forget(int region, RemoteException e) {
+        // the region may have failed over, its primary is looked up again next time
+        this.servers[region] = null;
+        return e;
+    }
+
+    private GameStateData refresh(int region) throws RemoteException {
+        try {
+            this.regionData[region] = this.server(region).getGameData();
+        } catch (RemoteException e) {
+            throw this.forget(region, e);
+        }
+        return this.regionData[region];
+    }
+
+    private GameStateData merge() {
+        List<GameStateData> parts = new ArrayList<>(this.regionData.length);
+        for (GameStateData data : this.regionData) {
+            if (data != null) {
+                parts.add(data);
+            }
+        }
+        return GameStateData.merge(parts, viewVersions.incrementAndGet());
+    }
+
+    /**
+     * @return the region holding the player, -1 if no region has it even after a refresh
+     */
+    private int regionOfPlayer(String playerId) throws RemoteException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            for (int region = 0; region < this.regionData.length; region++) {
+                GameStateData data = this.regionData[region];
+                if (data != null && data.getPlayerMap().containsKey(playerId)) {
+                    return region;
+                }
+            }
+            this.getGameData();
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized GameStateData getGameData() throws RemoteException {
+        for (int region = 0; region < this.regionData.length; region++) {
+            this.refresh(region);
+        }
+        return this.merge();
+    }
+
+    @Override
+    public synchronized GameStateData addPlayer(String playerId) throws RemoteException {
+        List<Integer> regions = new ArrayList<>();
+        for (int region = 0; region < this.servers.length; region++) {
+            regions.add(region);
+        }
+        Collections.shuffle(regions);
+        for (int region : regions) {
+            try {
+                this.regionData[region] = this.server(region).addPlayer(playerId);
+                logger.info("Player joined region {}, player={}", region, playerId);
+                return this.merge();
+            } catch (IllegalStateException e) {
+                logger.info("Region {} is full, trying the next one", region);
+            } catch (RemoteException e) {
+                throw this.forget(region, e);
+            }
+        }
+        throw new IllegalStateException("No available position left for player " + playerId);
+    }
+
+    @Override
+    public synchronized GameStateData movePlayer(String playerId, Direction direction) throws RemoteException {
+        int region = this.regionOfPlayer(playerId);
+        if (region < 0) {
+            // a region lost its primary and backup together, the player joins again
+            logger.warn("Player is in no region, joining again, player={}", playerId);
+            return this.addPlayer(playerId);
+        }
+        Position from = this.regionData[region].getPlayerMap().get(playerId).getPosition();
+        try {
+            this.regionData[region] = this.server(region).movePlayer(playerId, direction);
+        } catch (RemoteException e) {
+            throw this.forget(region, e);
+        }
+        if (!this.regionData[region].getPlayerMap().containsKey(playerId)) {
+            // the player was handed off, the region it moved into has the new data
+            int target = this.regionMap.regionOf(from.movePosition(direction));
+            if (target >= 0) {
+                this.refresh(target);
+            }
+        }
+        return this.merge();
+    }
+
+    @Override
+    public GameStateDelta getGameDataSince(long version) throws RemoteException {
+        // region versions cannot be combined into one, so the merged view is always a snapshot
+        return GameStateDelta.ofSnapshot(this.getGameData());
+    }
+
+    @Override
+    public GameStateDelta movePlayerSince(String playerId, Direction direction, long version)
+            throws RemoteException {
+        return GameStateDelta.ofSnapshot(this.movePlayer(playerId, direction));
+    }
+
+    @Override
+    public synchronized void changeBackupServer(String backupServer) throws RemoteException {
+        throw new RemoteException("The backup server of a sharded grid is changed per region");
+    }
+
+    @Override
+    public synchronized void removePlayer(String playerId) throws RemoteException {
+        for (int region = 0; region < this.servers.length; region++) {
+            try {
+                this.server(region).removePlayer(playerId);
+            } catch (RemoteException e) {
+                throw this.forget(region, e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(String playerId, IGameSubscriber subscriber, long version) throws RemoteException {
+        throw new RemoteException("Push updates are not available for a sharded grid");
+    }
+
+    @Override
+    public void unsubscribe(String playerId) throws RemoteException {
+    }
+
+    @Override
+    public synchronized boolean acceptPlayer(String playerId, Position position, int points)
+            throws RemoteException {
+        int region = this.regionMap.regionOf(position);
+        try {
+            return region >= 0 && this.server(region).acceptPlayer(playerId, position, points);
+        } catch (RemoteException e) {
+            throw this.forget(region, e);
+        }
+    }
+
+    @Override
+    public InetSocketAddress getNioAddress() {
+        return null;
+    }
+}
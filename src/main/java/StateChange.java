@@ -0,0 +1,120 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+public class StateChange implements Externalizable {
+
+    private static final long serialVersionUID = -4406214905468851772L;
+
+    private long sequence;
+    private ChangeType type;
+    private String playerId;
+    // new position of the player or the treasure
+    private Position position;
+    // old position of the treasure, only used by TREASURE_MOVED
+    private Position previousPosition;
+    private int points;
+
+    // only for deserialization, changes are not modified after construction
+    public StateChange() {}
+
+    private StateChange(long sequence, ChangeType type, String playerId, Position position,
+                        Position previousPosition, int points) {
+        this.sequence = sequence;
+        this.type = type;
+        this.playerId = playerId;
+        this.position = position;
+        this.previousPosition = previousPosition;
+        this.points = points;
+    }
+
+    public static StateChange playerJoined(long sequence, String playerId, Position position, int points) {
+        return new StateChange(sequence, ChangeType.PLAYER_JOINED, playerId, position, null, points);
+    }
+
+    public static StateChange playerLeft(long sequence, String playerId) {
+        return new StateChange(sequence, ChangeType.PLAYER_LEFT, playerId, null, null, 0);
+    }
+
+    public static StateChange playerMoved(long sequence, String playerId, Position position) {
+        return new StateChange(sequence, ChangeType.PLAYER_MOVED, playerId, position, null, 0);
+    }
+
+    public static StateChange pointsChanged(long sequence, String playerId, int points) {
+        return new StateChange(sequence, ChangeType.POINTS_CHANGED, playerId, null, null, points);
+    }
+
+    public static StateChange treasureMoved(long sequence, Position from, Position to) {
+        return new StateChange(sequence, ChangeType.TREASURE_MOVED, null, to, from, 0);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public ChangeType getType() {
+        return type;
+    }
+
+    public String getPlayerId() {
+        return playerId;
+    }
+
+    public Position getPosition() {
+        return position;
+    }
+
+    public Position getPreviousPosition() {
+        return previousPosition;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        BinaryCodec.writeFormatVersion(out);
+        this.writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        BinaryCodec.readFormatVersion(in);
+        this.readFrom(in, 0);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        BinaryCodec.writeVarLong(out, this.sequence);
+        out.writeByte(this.type.ordinal());
+        BinaryCodec.writeString(out, this.playerId);
+        BinaryCodec.writePosition(out, this.position);
+        BinaryCodec.writePosition(out, this.previousPosition);
+        BinaryCodec.writeVarInt(out, this.points);
+    }
+
+    // positions are resolved against the grid of the enclosing delta or journal
+    public void readFrom(DataInput in, int gridSize) throws IOException {
+        this.sequence = BinaryCodec.readVarLong(in);
+        this.type = ChangeType.values()[in.readUnsignedByte()];
+        this.playerId = BinaryCodec.readString(in);
+        this.position = BinaryCodec.readPosition(in, gridSize);
+        this.previousPosition = BinaryCodec.readPosition(in, gridSize);
+        this.points = BinaryCodec.readVarInt(in);
+    }
+
+    @Override
+    public String toString() {
+        return "StateChange{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", playerId='" + playerId + '\'' +
+                ", position=" + position +
+                ", previousPosition=" + previousPosition +
+                ", points=" + points +
+                '}';
+    }
+}
@@ -20,29 +20,44 @@ public class StatusChecker extends Thread {
 
         while(true) {
             try {
-                newType = tracker.ping(playerID);
+                PingReply reply = tracker.ping(playerID, game.getServerEpoch());
+                game.onServerChange(reply);
+                newType = reply.getType();
             } catch (Exception e) {
-                logger.error("Failed to ping tracker, player=" + playerID);
+                logger.error("Failed to ping tracker, player={}", playerID);
             }
             try {
                 if (newType != null) {
                     if (newType != addedType) {
+                        if (addedType == ClientType.READ_REPLICA) {
+                            game.closeReadReplica();
+                        }
                         this.addedType = newType;
+                        this.game.refreshServedRegion();
                         if (newType == ClientType.PRIMARY_SERVER) {
-                            GameServer gameServer = new GameServer(this.game);
-                            game.setPrimaryServer(gameServer);
-                            game.getPrimaryServer().respawn();
+                            BackupServer backupServer = game.getBackupServer();
+                            GameServer promoted = backupServer == null ? null : backupServer.promote();
+                            if (promoted != null) {
+                                game.setPrimaryServer(promoted);
+                                game.setBackupServer(null);
+                            } else {
+                                GameServer gameServer = new GameServer(this.game);
+                                game.setPrimaryServer(gameServer);
+                                game.getPrimaryServer().respawn();
+                            }
                         } else if (newType == ClientType.BACKUP_SERVER) {
                             BackupServer backupServer = new BackupServer(this.game);
                             game.setBackupServer(backupServer);
                             game.getBackupServer().initialize();
+                        } else if (newType == ClientType.READ_REPLICA) {
+                            game.registerReadReplica();
                         }
                     }
                 }
 
-                Thread.sleep(500);
+                Thread.sleep(Constants.HEARTBEAT_INTERVAL_MILLIS);
             } catch (Exception e) {
-                logger.error("Error happens when handling ping result, player=" + playerID);
+                logger.error("Error happens when handling ping result, player={}", playerID);
             }
         }
 
@@ -3,19 +3,51 @@ import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class Tracker extends GameMeta implements ITracker{
 	private static final Logger logger = Logger.getLogger(Tracker.class);
-	private final ConcurrentHashMap<String, Long> alivePlayers;
-	private String primaryServer;
-	private String backupServer;
-	private IGameServer gameServer;
+	private final ConcurrentHashMap<String, Heartbeat> alivePlayers;
+	private final HeartbeatWheel heartbeatWheel;
+	private final FailureDetectorMetrics failureDetectorMetrics;
+	// primary and backup server of each region, there is only region 0 unless the grid is sharded
+	private final String[] primaryServers;
+	private final String[] backupServers;
+	private final IGameServer[] gameServers;
+	// changes whenever a server is replaced or a primary gets ready, waiting players are notified on it
+	private final Object serverChange = new Object();
+	private volatile long serverEpoch;
+	private volatile Registry registry;
+	// players hosting a read replica, and the replicas ready to serve including the one of the backup
+	private final int readReplicaCount;
+	private final Set<String> readReplicaPlayers = ConcurrentHashMap.newKeySet();
+	private final Map<String, IReadReplica> readReplicas = new ConcurrentHashMap<>();
+	private final Metrics metrics = new Metrics("Tracker");
 
 	public Tracker(int treasureSize, int gridSize) {
-		super(gridSize, treasureSize);
+		this(treasureSize, gridSize, 1);
+	}
+
+	public Tracker(int treasureSize, int gridSize, int regionCount) {
+		this(treasureSize, gridSize, regionCount, 0);
+	}
+
+	public Tracker(int treasureSize, int gridSize, int regionCount, int readReplicaCount) {
+		super(gridSize, treasureSize, new RegionMap(gridSize, regionCount).getRegionCount());
+		// a replica copies the whole grid, which a sharded grid does not keep in one place
+		this.readReplicaCount = this.getRegionCount() == 1 ? readReplicaCount : 0;
 		this.alivePlayers = new ConcurrentHashMap<>();
+		this.heartbeatWheel = new HeartbeatWheel(Constants.HEARTBEAT_MAX_TIMEOUT_MILLIS, Constants.HEARTBEAT_WHEEL_TICK_MILLIS);
+		this.failureDetectorMetrics = new FailureDetectorMetrics();
+		this.primaryServers = new String[this.getRegionCount()];
+		this.backupServers = new String[this.getRegionCount()];
+		this.gameServers = new IGameServer[this.getRegionCount()];
+		this.metrics.gauge("players", alivePlayers::size);
+		this.metrics.gauge("readReplicas", readReplicas::size);
+		this.metrics.gauge("serverEpoch", () -> serverEpoch);
 	}
 
 	public static void main(String[] args) {
@@ -28,27 +60,23 @@ public class Tracker extends GameMeta implements ITracker{
 		int port = Integer.parseInt(args[0]);
 		int gridSize = Integer.parseInt(args[1]);
 		int treasureSize = Integer.parseInt(args[2]);
-		Registry registry;
-		ITracker stub;
 		if (port == Constants.DEFAULT_RMI_REGISTRY_PORT) {
 			logger.error("port 1099 is used by rmi registry");
 			System.exit(0);
 			return;
 		}
 
-		Tracker tracker = new Tracker(treasureSize, gridSize);
+		Tracker tracker = new Tracker(treasureSize, gridSize, Integer.getInteger(Constants.REGIONS_PROPERTY, 1),
+				Integer.getInteger(Constants.READ_REPLICAS_PROPERTY, 0));
 		try {
-			stub = (ITracker) UnicastRemoteObject.exportObject(tracker, port);
-			registry = LocateRegistry.getRegistry();
-			registry.rebind(Constants.TRACKER_STUB_NAME, stub);
+			tracker.exportAndBind(LocateRegistry.getRegistry(), port);
 			logger.info("Tracker ready");
 		} catch (Exception e) {
-			logger.error("Tracker exception: " + e);
+			logger.error("Tracker exception: {}", e);
 			e.printStackTrace();
 		}
 
-		PingChecker pingChecker = new PingChecker(tracker, tracker.alivePlayers);
-		pingChecker.start();
+		tracker.startFailureDetector();
 
 //		ScheduledExecutorService executorService = new ScheduledThreadPoolExecutor(1,
 //				new BasicThreadFactory.
@@ -76,91 +104,314 @@ public class Tracker extends GameMeta implements ITracker{
 
 	}
 
+	/**
+	 * Exports the tracker on the given port and binds it in the registry, which also holds the stubs of
+	 * the game servers it unbinds when they fail.
+	 */
+	public ITracker exportAndBind(Registry registry, int port) throws RemoteException {
+		ITracker stub = (ITracker) UnicastRemoteObject.exportObject(this, port);
+		registry.rebind(Constants.TRACKER_STUB_NAME, stub);
+		this.registry = registry;
+		this.metrics.register();
+		return stub;
+	}
+
+	public void startFailureDetector() {
+		PingChecker pingChecker = new PingChecker(this, this.heartbeatWheel, this.failureDetectorMetrics);
+		pingChecker.start();
+	}
+
+	public FailureDetectorMetrics getFailureDetectorMetrics() {
+		return failureDetectorMetrics;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
 	@Override
 	public synchronized ClientType addPlayer(String playerId) throws RemoteException {
-		logger.info("Add player " + playerId);
-		alivePlayers.put(playerId, System.currentTimeMillis());
-		if (primaryServer == null) {
-			primaryServer = playerId;
-			return ClientType.PRIMARY_SERVER;
-		} else if (backupServer == null) {
-			backupServer = playerId;
-			return ClientType.BACKUP_SERVER;
+		return metrics.time("addPlayer", () -> doAddPlayer(playerId));
+	}
+
+	private ClientType doAddPlayer(String playerId) {
+		logger.info("Add player {}", playerId);
+		ClientType type = assignRole(playerId);
+		failureDetectorMetrics.forget(playerId);
+		Heartbeat previous = alivePlayers.put(playerId,
+				heartbeatWheel.register(playerId, System.currentTimeMillis(), FailureDetectorPolicy.forRole(type)));
+		if (previous != null) {
+			previous.cancel();
+		}
+		if (type == ClientType.PRIMARY_SERVER || type == ClientType.BACKUP_SERVER) {
+			serversChanged();
+		}
+		return type;
+	}
+
+	private ClientType assignRole(String playerId) {
+		// every region gets a primary server before any region gets a backup server
+		for (int region = 0; region < primaryServers.length; region++) {
+			if (primaryServers[region] == null) {
+				primaryServers[region] = playerId;
+				return ClientType.PRIMARY_SERVER;
+			}
+		}
+		for (int region = 0; region < backupServers.length; region++) {
+			if (backupServers[region] == null) {
+				backupServers[region] = playerId;
+				return ClientType.BACKUP_SERVER;
+			}
+		}
+		if (readReplicaPlayers.size() < readReplicaCount) {
+			readReplicaPlayers.add(playerId);
+			return ClientType.READ_REPLICA;
 		}
 		return ClientType.PLAYER;
 	}
 
 	@Override
-	public ClientType ping(String playerId) throws RemoteException {
-		if (primaryServer != null && gameServer == null && primaryServer.equals(playerId)) {
-			try {
-				gameServer = (IGameServer) LocateRegistry.getRegistry(Constants.DEFAULT_RMI_REGISTRY_PORT).lookup(Constants.PRIMARY_GAME_SERVER_STUB_NAME);
-				logger.info("Tracker get Server stub");
-			} catch (NotBoundException e) {
-				logger.error("Tracker fail to get Server stub");
+	public PingReply ping(String playerId, long serverEpoch) throws RemoteException {
+		return metrics.time("ping", () -> doPing(playerId, serverEpoch));
+	}
+
+	private PingReply doPing(String playerId, long serverEpoch) {
+		ClientType type = roleOf(playerId);
+		// the wheel picks up the new deadline when the old one comes due
+		Heartbeat heartbeat = alivePlayers.get(playerId);
+		if (heartbeat != null) {
+			heartbeat.beat(System.currentTimeMillis(), FailureDetectorPolicy.forRole(type));
+		} else if (failureDetectorMetrics.recordPing(playerId)) {
+			logger.warn("Player {} pinged after it was declared dead, {}", playerId, failureDetectorMetrics);
+		}
+		return reply(type, serverEpoch);
+	}
+
+	@Override
+	public PingReply awaitServerChange(String playerId, long serverEpoch, long timeoutMillis) throws RemoteException {
+		return metrics.time("awaitServerChange", () -> doAwaitServerChange(playerId, serverEpoch, timeoutMillis));
+	}
+
+	private PingReply doAwaitServerChange(String playerId, long serverEpoch, long timeoutMillis) {
+		long deadline = System.currentTimeMillis() + Math.min(timeoutMillis, Constants.SERVER_CHANGE_WAIT_MILLIS);
+		synchronized (serverChange) {
+			long remaining = deadline - System.currentTimeMillis();
+			while (this.serverEpoch == serverEpoch && remaining > 0) {
+				try {
+					serverChange.wait(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				remaining = deadline - System.currentTimeMillis();
 			}
 		}
+		return reply(roleOf(playerId), serverEpoch);
+	}
 
-		alivePlayers.replace(playerId, System.currentTimeMillis());
-		if (primaryServer != null && primaryServer.equals(playerId)) {
-			return ClientType.PRIMARY_SERVER;
-		} else if (backupServer != null && backupServer.equals(playerId)) {
-			return ClientType.BACKUP_SERVER;
-		} else {
-			return ClientType.PLAYER;
+	@Override
+	public void registerGameServer(int region, IGameServer gameServer) throws RemoteException {
+		metrics.time("registerGameServer", () -> {
+			logger.info("Game server of region {} registered", region);
+			gameServers[region] = gameServer;
+			serversChanged();
+		});
+	}
+
+	@Override
+	public void registerReadReplica(String playerId, IReadReplica readReplica) throws RemoteException {
+		metrics.time("registerReadReplica", () -> doRegisterReadReplica(playerId, readReplica));
+	}
+
+	private void doRegisterReadReplica(String playerId, IReadReplica readReplica) {
+		ClientType type = roleOf(playerId);
+		if (type != ClientType.READ_REPLICA && type != ClientType.BACKUP_SERVER) {
+			logger.warn("Ignoring read replica of {}, which is a {}", playerId, type.name());
+			return;
 		}
+		logger.info("Read replica of {} registered", playerId);
+		readReplicas.put(playerId, readReplica);
+		serversChanged();
+	}
+
+	private PingReply reply(ClientType type, long knownEpoch) {
+		// the epoch is read first, so the servers sent are at least as new as it
+		long epoch = this.serverEpoch;
+		if (epoch == knownEpoch) {
+			return new PingReply(type, epoch, null, null);
+		}
+		return new PingReply(type, epoch, gameServers.clone(), readReplicas.values().toArray(new IReadReplica[0]));
+	}
+
+	private void serversChanged() {
+		synchronized (serverChange) {
+			serverEpoch++;
+			serverChange.notifyAll();
+		}
+	}
+
+	private ClientType roleOf(String playerId) {
+		for (int region = 0; region < primaryServers.length; region++) {
+			if (playerId.equals(primaryServers[region])) {
+				return ClientType.PRIMARY_SERVER;
+			} else if (playerId.equals(backupServers[region])) {
+				return ClientType.BACKUP_SERVER;
+			}
+		}
+		return readReplicaPlayers.contains(playerId) ? ClientType.READ_REPLICA : ClientType.PLAYER;
 	}
 
 	@Override
 	public void quit(String playerId) throws RemoteException {
-		logger.info(playerId + "quit");
-		alivePlayers.remove(playerId);
-		if (primaryServer != null && primaryServer.equals(playerId)) {
-			primaryServer = selectNewServer("primary server");
-			gameServer = null;
-			Registry registry = LocateRegistry.getRegistry();
-			try {
-				registry.unbind(Constants.PRIMARY_GAME_SERVER_STUB_NAME);
-			} catch (NotBoundException e) {
-				e.printStackTrace();
+		metrics.time("quit", () -> doQuit(playerId));
+	}
+
+	private void doQuit(String playerId) throws RemoteException {
+		logger.info("{}quit", playerId);
+		// roles change under the same monitor as in addPlayer, the remote calls are made after releasing it
+		IGameServer[] servers;
+		boolean[] wasPrimary = new boolean[primaryServers.length];
+		synchronized (this) {
+			servers = gameServers.clone();
+			Heartbeat heartbeat = alivePlayers.remove(playerId);
+			if (heartbeat != null) {
+				heartbeat.cancel();
+			}
+			boolean replicaRemoved = readReplicas.remove(playerId) != null;
+			if (readReplicaPlayers.remove(playerId)) {
+				refillReadReplicas(playerId);
+			}
+			for (int region = 0; region < primaryServers.length; region++) {
+				if (playerId.equals(primaryServers[region])) {
+					String backup = backupServers[region];
+					if (backup != null && alivePlayers.containsKey(backup)) {
+						// the backup is a hot standby and takes over at once, a new backup is chosen instead
+						logger.info("{} is promoted to the new {}", backup, serverName("primary server", region));
+						primaryServers[region] = backup;
+						readReplicas.remove(backup);
+						backupServers[region] = selectNewServer(serverName("backup server", region));
+					} else {
+						primaryServers[region] = selectNewServer(serverName("primary server", region));
+					}
+					wasPrimary[region] = true;
+					gameServers[region] = null;
+					serversChanged();
+				} else if (playerId.equals(backupServers[region])) {
+					backupServers[region] = selectNewServer(serverName("backup server", region));
+					serversChanged();
+				} else if (replicaRemoved) {
+					serversChanged();
+				}
+			}
+		}
+		for (int region = 0; region < primaryServers.length; region++) {
+			if (wasPrimary[region]) {
+				unbindPrimary(region, servers[region]);
+			} else {
+				tryRemovePlayer(region, servers[region], playerId);
 			}
-		} else if (backupServer != null && backupServer.equals(playerId)) {
-			backupServer = selectNewServer("backup server");
-			tryRemovePlayer(playerId);
-		} else {
-			tryRemovePlayer(playerId);
 		}
 	}
 
-	private void tryRemovePlayer(String playerId) throws RemoteException {
-		if (this.gameServer != null) {
-			this.gameServer.removePlayer(playerId);
+	private void unbindPrimary(int region, IGameServer gameServer) throws RemoteException {
+		if (gameServer == null) {
+			// a stub the quitting primary never registered cannot be told apart from the new primary's
+			return;
+		}
+		String name = RegionMap.primaryStubName(region);
+		try {
+			// the new primary may have bound its own stub already, which must stay
+			if (gameServer.equals(registry.lookup(name))) {
+				registry.unbind(name);
+			}
+		} catch (NotBoundException e) {
+			e.printStackTrace();
 		}
 	}
 
+	private void tryRemovePlayer(int region, IGameServer gameServer, String playerId) {
+		if (gameServer != null) {
+			try {
+				gameServer.removePlayer(playerId);
+			} catch (RemoteException e) {
+				// a crashed primary is replaced on its own, the other regions still drop the player
+				logger.warn("Failed to remove player {} from region {}", playerId, region);
+			}
+		}
+	}
+
+	private String serverName(String server, int region) {
+		return primaryServers.length == 1 ? server : server + " of region " + region;
+	}
+
 	@Override
 	public GameMeta getGameMeta() throws RemoteException {
-		return new GameMeta(this.getGridSize(), this.getTreasureSize());
+		return new GameMeta(this.getGridSize(), this.getTreasureSize(), this.getRegionCount());
 	}
 
 	@Override
 	public Set<String> getPlayerSet() throws RemoteException {
-		return alivePlayers.keySet();
+		// a key set view would be serialized together with the heartbeats of the map
+		return metrics.time("getPlayerSet", () -> new HashSet<>(alivePlayers.keySet()));
 	}
 
 	@Override
 	public ServerInfo getServerInfo() throws RemoteException {
-		return new ServerInfo(this.primaryServer, this.backupServer);
+		return getRegionServerInfo(0);
+	}
+
+	@Override
+	public ServerInfo getRegionServerInfo(int region) throws RemoteException {
+		return metrics.time("getRegionServerInfo",
+				() -> new ServerInfo(this.primaryServers[region], this.backupServers[region]));
 	}
 
+	@Override
+	public int getRegion(String playerId) throws RemoteException {
+		for (int region = 0; region < primaryServers.length; region++) {
+			if (playerId.equals(primaryServers[region]) || playerId.equals(backupServers[region])) {
+				return region;
+			}
+		}
+		return -1;
+	}
+
+	private boolean isServer(String playerId) {
+		for (int region = 0; region < primaryServers.length; region++) {
+			if (playerId.equals(primaryServers[region]) || playerId.equals(backupServers[region])) {
+				return true;
+			}
+		}
+		return false;
+	}
 
 	private String selectNewServer(String server) {
 		for (String playerId : alivePlayers.keySet()) {
-			if (!playerId.equals(primaryServer) && !playerId.equals(backupServer)) {
-				logger.info(playerId + " is selected as the new " + server);
+			if (!isServer(playerId) && !readReplicaPlayers.contains(playerId)) {
+				logger.info("{} is selected as the new {}", playerId, server);
+				return playerId;
+			}
+		}
+		// servers come before replicas, a replica host gives up its replica and another player takes it
+		for (String playerId : alivePlayers.keySet()) {
+			if (readReplicaPlayers.remove(playerId)) {
+				readReplicas.remove(playerId);
+				refillReadReplicas(playerId);
+				logger.info("{} is selected as the new {}", playerId, server);
 				return playerId;
 			}
 		}
 		return null;
 	}
+
+	private void refillReadReplicas(String leaving) {
+		for (String playerId : alivePlayers.keySet()) {
+			if (readReplicaPlayers.size() >= readReplicaCount) {
+				return;
+			}
+			if (!playerId.equals(leaving) && !isServer(playerId) && readReplicaPlayers.add(playerId)) {
+				logger.info("{} is selected to host a read replica", playerId);
+			}
+		}
+	}
 }
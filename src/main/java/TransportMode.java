@@ -0,0 +1,10 @@
+public enum TransportMode {
+    // java RMI, one server thread per connection
+    RMI,
+    // length-prefixed binary frames over a non-blocking selector
+    NIO;
+
+    public static TransportMode fromSystemProperties() {
+        return TransportMode.valueOf(System.getProperty(Constants.TRANSPORT_PROPERTY, RMI.name()).toUpperCase());
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+
+/**
+ * Pushes game updates to subscribed clients. Publishing only wakes the publisher thread, which hands
+ * each idle subscriber to a sender. A subscriber that is still busy with a previous update gets all
+ * later changes in one delta once it is done. A subscriber that keeps failing is dropped, it cannot be
+ * told so, and subscribes again once it notices that the game changed without a push.
+ */
+public class UpdatePublisher {
+
+    private static final Logger logger = Logger.getLogger(UpdatePublisher.class);
+
+    private final LongFunction<GameStateDelta> deltaSource;
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final ExecutorService senders;
+    private boolean pending;
+    private Thread publisher;
+
+    public UpdatePublisher(LongFunction<GameStateDelta> deltaSource, int senders) {
+        this.deltaSource = deltaSource;
+        this.senders = Executors.newFixedThreadPool(senders, r -> {
+            Thread thread = new Thread(r, "update-publisher-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getSubscriberCount() {
+        return this.subscriptions.size();
+    }
+
+    public synchronized void subscribe(String playerId, IGameSubscriber subscriber, long version) {
+        this.subscriptions.put(playerId, new Subscription(playerId, subscriber, version));
+        if (this.publisher == null) {
+            this.publisher = new Thread(this::runPublisher, "update-publisher");
+            this.publisher.setDaemon(true);
+            this.publisher.start();
+        }
+        this.pending = true;
+        this.notifyAll();
+    }
+
+    public void unsubscribe(String playerId) {
+        this.subscriptions.remove(playerId);
+    }
+
+    public synchronized void publish() {
+        if (this.subscriptions.isEmpty()) {
+            return;
+        }
+        this.pending = true;
+        this.notifyAll();
+    }
+
+    private void runPublisher() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (!this.pending) {
+                        this.wait();
+                    }
+                } catch (InterruptedException e) {
+                    logger.warn("Update publisher interrupted");
+                    return;
+                }
+                this.pending = false;
+            }
+            for (Subscription subscription : this.subscriptions.values()) {
+                subscription.dirty = true;
+                if (subscription.sending.compareAndSet(false, true)) {
+                    this.senders.execute(subscription::send);
+                }
+            }
+        }
+    }
+
+    private class Subscription {
+
+        private final String playerId;
+        private final IGameSubscriber subscriber;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean dirty;
+        private int failures;
+        private long version;
+        private String primaryServer;
+        private String backupServer;
+
+        Subscription(String playerId, IGameSubscriber subscriber, long version) {
+            this.playerId = playerId;
+            this.subscriber = subscriber;
+            this.version = version;
+        }
+
+        void send() {
+            do {
+                try {
+                    while (this.dirty) {
+                        this.dirty = false;
+                        GameStateDelta delta = deltaSource.apply(this.version);
+                        boolean serversChanged = !Objects.equals(this.primaryServer, delta.getPrimaryServer())
+                                || !Objects.equals(this.backupServer, delta.getBackupServer());
+                        if (delta.isSnapshot() || delta.getVersion() != this.version || serversChanged) {
+                            this.subscriber.onGameUpdate(delta);
+                            this.version = delta.getVersion();
+                            this.primaryServer = delta.getPrimaryServer();
+                            this.backupServer = delta.getBackupServer();
+                        }
+                        this.failures = 0;
+                    }
+                } catch (Exception e) {
+                    this.failures++;
+                    logger.warn("Pushing update to {} failed, error={}", this.playerId, e.getMessage());
+                    if (this.failures >= Constants.PUBLISHER_MAX_FAILURES) {
+                        logger.warn("Dropping subscriber {}", this.playerId);
+                        subscriptions.remove(this.playerId, this);
+                    }
+                    return;
+                } finally {
+                    this.sending.set(false);
+                }
+                // an update may have arrived after the last check but before the flag was released
+            } while (this.dirty && this.sending.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Futures waiting for a version to be reached, such as the durable version of the journal or the one
+ * the backup has acknowledged. Not thread safe, the owner guards it with its own lock and completes the
+ * taken futures after releasing that lock, since their continuations run on the completing thread.
+ */
+public class VersionWaiters {
+
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparingLong(w -> w.version));
+
+    public CompletableFuture<Void> add(long version) {
+        Waiter waiter = new Waiter(version);
+        this.waiters.add(waiter);
+        return waiter.future;
+    }
+
+    public boolean isEmpty() {
+        return this.waiters.isEmpty();
+    }
+
+    /**
+     * @return the futures waiting for the given version or an earlier one, removed from the waiters
+     */
+    public List<CompletableFuture<Void>> takeUpTo(long version) {
+        List<CompletableFuture<Void>> reached = new ArrayList<>();
+        while (!this.waiters.isEmpty() && this.waiters.peek().version <= version) {
+            reached.add(this.waiters.poll().future);
+        }
+        return reached;
+    }
+
+    public List<CompletableFuture<Void>> takeAll() {
+        return this.takeUpTo(Long.MAX_VALUE);
+    }
+
+    public static void complete(List<CompletableFuture<Void>> futures) {
+        for (CompletableFuture<Void> future : futures) {
+            future.complete(null);
+        }
+    }
+
+    private static class Waiter {
+        private final long version;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(long version) {
+            this.version = version;
+        }
+    }
+}
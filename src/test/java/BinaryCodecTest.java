@@ -0,0 +1,132 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryCodecTest {
+
+    @Test
+    void varIntRoundTripsAtEveryLengthBoundary() throws IOException {
+        int[] values = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152, 268435455, 268435456,
+                Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        int[] lengths = {1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 5, 5};
+        for (int i = 0; i < values.length; i++) {
+            int value = values[i];
+            byte[] bytes = encode(out -> BinaryCodec.writeVarInt(out, value));
+            assertEquals(lengths[i], bytes.length, "length of " + value);
+            assertEquals(value, BinaryCodec.readVarInt(input(bytes)));
+        }
+    }
+
+    @Test
+    void varLongRoundTripsAtEveryLengthBoundary() throws IOException {
+        long[] values = {0, 127, 128, (1L << 35) - 1, 1L << 35, (1L << 63) - 1, -1, Long.MIN_VALUE};
+        int[] lengths = {1, 1, 2, 5, 6, 9, 10, 10};
+        for (int i = 0; i < values.length; i++) {
+            long value = values[i];
+            byte[] bytes = encode(out -> BinaryCodec.writeVarLong(out, value));
+            assertEquals(lengths[i], bytes.length, "length of " + value);
+            assertEquals(value, BinaryCodec.readVarLong(input(bytes)));
+        }
+    }
+
+    @Test
+    void zigZagKeepsSmallNegativeValuesShort() throws IOException {
+        long[] values = {-1, 0, 1, -64, 63, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (long value : values) {
+            byte[] bytes = encode(out -> BinaryCodec.writeZigZagLong(out, value));
+            assertEquals(value, BinaryCodec.readZigZagLong(input(bytes)));
+        }
+        assertEquals(1, encode(out -> BinaryCodec.writeZigZagLong(out, -1)).length);
+        int[] ints = {-1, 0, 1, -64, 63, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        for (int value : ints) {
+            byte[] bytes = encode(out -> BinaryCodec.writeZigZagInt(out, value));
+            assertEquals(value, BinaryCodec.readZigZagInt(input(bytes)));
+        }
+        assertEquals(1, encode(out -> BinaryCodec.writeZigZagInt(out, -1)).length);
+    }
+
+    @Test
+    void varIntWithoutEndIsRejected() {
+        byte[] bytes = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0};
+        assertThrows(InvalidObjectException.class, () -> BinaryCodec.readVarInt(input(bytes)));
+    }
+
+    @Test
+    void stringsRoundTripIncludingNullAndEmpty() throws IOException {
+        String[] values = {null, "", "aa", "ü漢😀"};
+        for (String value : values) {
+            byte[] bytes = encode(out -> BinaryCodec.writeString(out, value));
+            assertEquals(value, BinaryCodec.readString(input(bytes)));
+        }
+        assertArrayEquals(new byte[] {0}, encode(out -> BinaryCodec.writeString(out, null)));
+    }
+
+    @Test
+    void positionsDecodeToTheCanonicalInstanceOfTheirGrid() throws IOException {
+        byte[] bytes = encode(out -> BinaryCodec.writePosition(out, Position.of(15, 3, 14)));
+        // another grid size in the same JVM does not change where positions of this one resolve
+        Position.of(16, 0, 1);
+        assertSame(Position.of(15, 3, 14), BinaryCodec.readPosition(input(bytes), 15));
+        assertSame(Position.of(16, 3, 14), BinaryCodec.readPosition(input(bytes), 16));
+    }
+
+    @Test
+    void positionsOutsideOfTheGridDecodeAsPlainInstances() throws IOException {
+        Position[] values = {new Position(-1, 0), new Position(0, -1), new Position(-1, -1), new Position(15, 2),
+                new Position(Short.MAX_VALUE, Short.MIN_VALUE), new Position(Short.MAX_VALUE + 1, Short.MIN_VALUE - 1),
+                new Position(Integer.MIN_VALUE, Integer.MAX_VALUE)};
+        for (Position value : values) {
+            byte[] bytes = encode(out -> BinaryCodec.writePosition(out, value));
+            Position decoded = BinaryCodec.readPosition(input(bytes), 15);
+            assertEquals(value, decoded);
+            assertNotSame(value, decoded);
+        }
+        byte[] unknownGrid = encode(out -> BinaryCodec.writePosition(out, Position.of(15, 1, 1)));
+        assertEquals(Position.of(15, 1, 1), BinaryCodec.readPosition(input(unknownGrid), 0));
+    }
+
+    @Test
+    void nullPositionRoundTrips() throws IOException {
+        assertNull(BinaryCodec.readPosition(input(encode(out -> BinaryCodec.writePosition(out, null))), 15));
+    }
+
+    @Test
+    void positionsOfSmallGridsTakeThreeBytes() throws IOException {
+        assertEquals(3, encode(out -> BinaryCodec.writePosition(out, Position.of(63, 62, 62))).length);
+        assertEquals(3, encode(out -> BinaryCodec.writePosition(out, new Position(-1, -1))).length);
+    }
+
+    @Test
+    void unknownFormatVersionIsRejected() {
+        byte[][] versions = {{BinaryCodec.FORMAT_VERSION - 1}, {BinaryCodec.FORMAT_VERSION + 1}, {0}};
+        for (byte[] version : versions) {
+            assertThrows(InvalidObjectException.class, () -> BinaryCodec.readFormatVersion(input(version)));
+        }
+    }
+
+    private static byte[] encode(Encoder encoder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        encoder.encode(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream input(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private interface Encoder {
+        void encode(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,221 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameDataSerializationTest {
+
+    private static final int GRID_SIZE = 15;
+
+    private GameState state;
+    private long initialVersion;
+    private GameStateData base;
+
+    // every kind of change: joins, moves, a collected treasure and a player leaving
+    @BeforeEach
+    void setUp() {
+        this.state = GameState.newGameState(GRID_SIZE, 10);
+        this.state.setPrimaryServer("aa");
+        this.state.setBackupServer("ab");
+        this.initialVersion = this.state.getVersion();
+        this.state.addPlayer("aa", Position.of(GRID_SIZE, 0, 0));
+        this.state.addPlayer("ab", Position.of(GRID_SIZE, 7, 7), 3);
+        this.state.addPlayer("ac", Position.of(GRID_SIZE, 14, 14));
+        this.base = new GameStateData(this.state.exportGameData());
+
+        PlayerInfo player = this.state.getPlayerMap().get("aa");
+        this.state.movePlayerAndFollowUp(player, player.getPosition().movePosition(Direction.SOUTH), null);
+        this.state.collectTreasure(player, this.state.getRandomAvailablePosition());
+        this.state.removePlayer("ac");
+    }
+
+    @Test
+    void gameStateDataRoundTrips() throws Exception {
+        GameStateData data = this.state.exportGameData();
+        GameStateData copy = roundTrip(data);
+
+        assertEquals(data.getVersion(), copy.getVersion());
+        assertEquals(GRID_SIZE, copy.getGridSize());
+        assertEquals("aa", copy.getPrimaryServer());
+        assertEquals("ab", copy.getBackupServer());
+        assertEquals(data.getTreasurePositions(), copy.getTreasurePositions());
+        assertEquals(data.getPlayerMap().keySet(), copy.getPlayerMap().keySet());
+        for (PlayerInfo player : data.getPlayerMap().values()) {
+            assertPlayerEquals(player, copy.getPlayerMap().get(player.getId()));
+        }
+    }
+
+    @Test
+    void gameStateDataPositionsAreCanonical() throws Exception {
+        GameStateData data = this.state.exportGameData();
+        // a table for another grid size in the same JVM must not be used for this data
+        Position.of(GRID_SIZE + 1, 0, 1);
+        GameStateData copy = roundTrip(data);
+        for (Position treasure : copy.getTreasurePositions()) {
+            assertSame(Position.of(GRID_SIZE, treasure.getX(), treasure.getY()), treasure);
+        }
+        for (PlayerInfo player : copy.getPlayerMap().values()) {
+            Position position = player.getPosition();
+            assertSame(Position.of(GRID_SIZE, position.getX(), position.getY()), position);
+        }
+    }
+
+    @Test
+    void emptyGameStateDataRoundTrips() throws Exception {
+        GameStateData copy = roundTrip(new GameStateData());
+        assertTrue(copy.getPlayerMap().isEmpty());
+        assertTrue(copy.getTreasurePositions().isEmpty());
+        assertNull(copy.getPrimaryServer());
+        assertNull(copy.getBackupServer());
+        assertEquals(0, copy.getGridSize());
+    }
+
+    @Test
+    void deltaOfChangesRoundTripsAndBringsTheBaseUpToDate() throws Exception {
+        GameStateDelta delta = GameStateDelta.ofChanges(this.state, this.base.getVersion(),
+                this.state.getChangesSince(this.base.getVersion()));
+        GameStateDelta copy = roundTrip(delta);
+
+        assertFalse(copy.isSnapshot());
+        assertEquals(delta.getBaseVersion(), copy.getBaseVersion());
+        assertEquals(delta.getVersion(), copy.getVersion());
+        assertEquals(GRID_SIZE, copy.getGridSize());
+        assertEquals("aa", copy.getPrimaryServer());
+        assertEquals("ab", copy.getBackupServer());
+        assertEquals(4, copy.getChanges().size());
+        for (int i = 0; i < delta.getChanges().size(); i++) {
+            assertChangeEquals(delta.getChanges().get(i), copy.getChanges().get(i));
+        }
+
+        GameStateData data = roundTrip(this.base);
+        assertTrue(data.applyChanges(copy.getChanges()));
+        GameStateData expected = this.state.exportGameData();
+        assertEquals(expected.getVersion(), data.getVersion());
+        assertEquals(expected.getTreasurePositions(), data.getTreasurePositions());
+        assertEquals(expected.getPlayerMap().keySet(), data.getPlayerMap().keySet());
+        for (PlayerInfo player : expected.getPlayerMap().values()) {
+            assertPlayerEquals(player, data.getPlayerMap().get(player.getId()));
+        }
+    }
+
+    @Test
+    void deltaOfSnapshotRoundTrips() throws Exception {
+        GameStateData data = this.state.exportGameData();
+        GameStateDelta copy = roundTrip(GameStateDelta.ofSnapshot(data));
+
+        assertTrue(copy.isSnapshot());
+        assertTrue(copy.getChanges().isEmpty());
+        assertEquals(data.getVersion(), copy.getVersion());
+        assertEquals(GRID_SIZE, copy.getGridSize());
+        GameStateData snapshot = copy.getSnapshot();
+        assertNotNull(snapshot);
+        assertEquals(data.getVersion(), snapshot.getVersion());
+        assertEquals(data.getTreasurePositions(), snapshot.getTreasurePositions());
+        for (PlayerInfo player : data.getPlayerMap().values()) {
+            assertPlayerEquals(player, snapshot.getPlayerMap().get(player.getId()));
+        }
+    }
+
+    @Test
+    void everyKindOfStateChangeRoundTrips() throws Exception {
+        List<StateChange> changes = this.state.getChangesSince(this.initialVersion);
+        assertEquals(ChangeType.values().length, changes.stream().map(StateChange::getType).distinct().count());
+        for (StateChange change : changes) {
+            assertChangeEquals(change, roundTrip(change));
+        }
+        assertChangeEquals(StateChange.playerJoined(Long.MAX_VALUE, "zz", new Position(-1, 3), Integer.MAX_VALUE),
+                roundTrip(StateChange.playerJoined(Long.MAX_VALUE, "zz", new Position(-1, 3), Integer.MAX_VALUE)));
+    }
+
+    @Test
+    void gameMetaRoundTrips() throws Exception {
+        GameMeta copy = roundTrip(new GameMeta(200, 40, 4));
+        assertEquals(200, copy.getGridSize());
+        assertEquals(40, copy.getTreasureSize());
+        assertEquals(4, copy.getRegionCount());
+    }
+
+    @Test
+    void serverInfoRoundTripsWithoutBackup() throws Exception {
+        ServerInfo copy = roundTrip(new ServerInfo("aa", null));
+        assertEquals("aa", copy.getPrimaryServer());
+        assertNull(copy.getBackupServer());
+
+        ServerInfo empty = roundTrip(new ServerInfo());
+        assertNull(empty.getPrimaryServer());
+        assertNull(empty.getBackupServer());
+    }
+
+    @Test
+    void positionRoundTripsOnItsOwn() throws Exception {
+        assertEquals(Position.of(GRID_SIZE, 4, 9), roundTrip(Position.of(GRID_SIZE, 4, 9)));
+        assertEquals(new Position(-1, GRID_SIZE), roundTrip(new Position(-1, GRID_SIZE)));
+    }
+
+    @Test
+    void streamWithAnUnknownFormatVersionIsRejected() throws Exception {
+        byte[] bytes = serialize(new GameMeta(15, 10, 1));
+        // the externalized data follows the class descriptor, starting with the format version
+        int at = indexOf(bytes, new byte[] {BinaryCodec.FORMAT_VERSION, 15, 10, 1});
+        bytes[at] = BinaryCodec.FORMAT_VERSION + 1;
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        assertThrows(InvalidObjectException.class, in::readObject);
+    }
+
+    private static void assertPlayerEquals(PlayerInfo expected, PlayerInfo actual) {
+        assertNotNull(actual, expected.getId());
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getPoints(), actual.getPoints(), expected.getId());
+        assertEquals(expected.getPosition(), actual.getPosition(), expected.getId());
+    }
+
+    private static void assertChangeEquals(StateChange expected, StateChange actual) {
+        assertEquals(expected.getSequence(), actual.getSequence());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getPlayerId(), actual.getPlayerId());
+        assertEquals(expected.getPosition(), actual.getPosition());
+        assertEquals(expected.getPreviousPosition(), actual.getPreviousPosition());
+        assertEquals(expected.getPoints(), actual.getPoints());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialize(value)));
+        return (T) in.readObject();
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = bytes.length - part.length; i >= 0; i--) {
+            int j = 0;
+            while (j < part.length && bytes[i + j] == part[j]) {
+                j++;
+            }
+            if (j == part.length) {
+                return i;
+            }
+        }
+        throw new AssertionError("Serialized bytes do not contain the expected data");
+    }
+}
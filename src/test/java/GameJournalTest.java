@@ -0,0 +1,195 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameJournalTest {
+
+    private static final int GRID_SIZE = 15;
+    // the file layout of GameJournal
+    private static final String JOURNAL_FILE = "journal";
+    private static final String[] CHECKPOINT_FILES = {"checkpoint-0", "checkpoint-1"};
+    private static final int CHECKPOINT_VERSION_OFFSET = 4;
+    private static final int CHECKPOINT_HEADER_BYTES = 4 + 8 + 4 + 8;
+
+    @TempDir
+    Path directory;
+
+    private GameJournal journal;
+    private int nextPlayer;
+
+    @AfterEach
+    void tearDown() {
+        if (this.journal != null) {
+            this.journal.close();
+        }
+    }
+
+    @Test
+    void recoversTheCheckpointAndTheJournalAfterIt() {
+        GameState state = this.startJournal(1000);
+        this.addPlayers(state, 5);
+        this.crash();
+
+        assertSameGame(state.exportGameData(), this.recover());
+    }
+
+    @Test
+    void emptyDirectoryRecoversNothing() {
+        assertNull(new GameJournal(this.directory, 1000).recover(GRID_SIZE, 0, GRID_SIZE));
+    }
+
+    @Test
+    void tornLastRecordIsDropped() throws IOException {
+        GameState state = this.startJournal(1000);
+        this.addPlayers(state, 4);
+        GameStateData expected = state.exportGameData();
+        this.addPlayers(state, 1);
+        this.crash();
+
+        Path journal = this.directory.resolve(JOURNAL_FILE);
+        byte[] bytes = Files.readAllBytes(journal);
+        byte[] torn = new byte[bytes.length - 3];
+        System.arraycopy(bytes, 0, torn, 0, torn.length);
+        Files.write(journal, torn);
+
+        assertSameGame(expected, this.recover());
+    }
+
+    @Test
+    void lastRecordWithABadChecksumIsDropped() throws IOException {
+        GameState state = this.startJournal(1000);
+        this.addPlayers(state, 4);
+        GameStateData expected = state.exportGameData();
+        this.addPlayers(state, 1);
+        this.crash();
+
+        Path journal = this.directory.resolve(JOURNAL_FILE);
+        flipByte(journal, (int) Files.size(journal) - 1);
+
+        assertSameGame(expected, this.recover());
+    }
+
+    @Test
+    void newerOfTheTwoCheckpointsIsChosen() throws IOException {
+        GameState state = this.startJournal(4);
+        this.addPlayers(state, 4);
+        this.addPlayers(state, 4);
+        this.addPlayers(state, 2);
+        this.crash();
+
+        long[] versions = {this.checkpointVersion(0), this.checkpointVersion(1)};
+        assertEquals(4, Math.abs(versions[0] - versions[1]));
+        assertSameGame(state.exportGameData(), this.recover());
+    }
+
+    @Test
+    void damagedNewerCheckpointFallsBackToTheOlderOne() throws IOException {
+        GameState state = this.startJournal(4);
+        this.addPlayers(state, 4);
+        GameStateData older = state.exportGameData();
+        this.addPlayers(state, 4);
+        this.addPlayers(state, 2);
+        this.crash();
+
+        int newer = this.checkpointVersion(0) > this.checkpointVersion(1) ? 0 : 1;
+        assertEquals(older.getVersion(), this.checkpointVersion(1 - newer));
+        // a checkpoint file may be longer than the snapshot in it, the first byte of the snapshot is damaged
+        flipByte(this.directory.resolve(CHECKPOINT_FILES[newer]), CHECKPOINT_HEADER_BYTES);
+
+        // the journal continues the damaged checkpoint, not the older one, so only the older one is recovered
+        assertSameGame(older, this.recover());
+    }
+
+    @Test
+    void recordsTheCheckpointCoversAreSkipped() throws IOException {
+        GameState state = this.startJournal(4);
+        this.addPlayers(state, 3);
+        byte[] covered = Files.readAllBytes(this.directory.resolve(JOURNAL_FILE));
+        // the fourth change triggers a checkpoint, which empties the journal
+        this.addPlayers(state, 1);
+        this.addPlayers(state, 1);
+        this.crash();
+
+        // a crash between the checkpoint and emptying the journal leaves the old records in front
+        Path journal = this.directory.resolve(JOURNAL_FILE);
+        byte[] tail = Files.readAllBytes(journal);
+        ByteBuffer bytes = ByteBuffer.allocate(covered.length + tail.length).put(covered).put(tail);
+        Files.write(journal, bytes.array());
+
+        assertSameGame(state.exportGameData(), this.recover());
+    }
+
+    @Test
+    void startReplacesTheFilesOfAnEarlierGame() {
+        GameState earlier = this.startJournal(4);
+        this.addPlayers(earlier, 10);
+
+        GameState state = GameState.newGameState(GRID_SIZE, 10);
+        this.journal.start(state);
+        this.addPlayers(state, 1);
+        this.crash();
+
+        // the earlier game has the higher version, its checkpoint must not be picked
+        assertTrue(earlier.getVersion() > state.getVersion());
+        assertSameGame(state.exportGameData(), this.recover());
+    }
+
+    private GameState startJournal(long checkpointInterval) {
+        GameState state = GameState.newGameState(GRID_SIZE, 10);
+        this.journal = new GameJournal(this.directory, checkpointInterval);
+        this.journal.start(state);
+        return state;
+    }
+
+    private void addPlayers(GameState state, int count) {
+        for (int i = 0; i < count; i++) {
+            state.addPlayer(PlayerIds.of(this.nextPlayer++), state.getRandomAvailablePosition());
+        }
+        this.journal.sync();
+    }
+
+    // whatever the writer forced is on disk, nothing more is written after the crash
+    private void crash() {
+        this.journal.close();
+        this.journal = null;
+    }
+
+    private GameState recover() {
+        GameState recovered = new GameJournal(this.directory, 1000).recover(GRID_SIZE, 0, GRID_SIZE);
+        assertNotNull(recovered);
+        return recovered;
+    }
+
+    private long checkpointVersion(int slot) throws IOException {
+        byte[] bytes = Files.readAllBytes(this.directory.resolve(CHECKPOINT_FILES[slot]));
+        return ByteBuffer.wrap(bytes).getLong(CHECKPOINT_VERSION_OFFSET);
+    }
+
+    private static void flipByte(Path path, int index) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[index] ^= 0x5a;
+        Files.write(path, bytes);
+    }
+
+    private static void assertSameGame(GameStateData expected, GameState actual) {
+        GameStateData data = actual.exportGameData();
+        assertEquals(expected.getVersion(), data.getVersion());
+        assertEquals(expected.getTreasurePositions(), data.getTreasurePositions());
+        assertEquals(expected.getPlayerMap().keySet(), data.getPlayerMap().keySet());
+        for (PlayerInfo player : expected.getPlayerMap().values()) {
+            PlayerInfo recovered = data.getPlayerMap().get(player.getId());
+            assertEquals(player.getPosition(), recovered.getPosition(), player.getId());
+            assertEquals(player.getPoints(), recovered.getPoints(), player.getId());
+        }
+    }
+}